@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Micro-benchmarks for the hot path of a turn: parsing a line, dispatching a
+ * command, a full 'go' turn with rendering, travelling to the temple and
+ * back, take/drop, the temple win check and forking a session to try a
+ * move. Every benchmark runs on the stock 13-room world and on a large
+ * generated world. Looking items up is also measured in a dump room holding
+ * ten thousand items, and the win check on a quest that requires five
+ * hundred items. One tick of the characters wandering the large world is
+ * timed for a crowd of WANDERERS characters, in sequence and in parallel.
+ * Both worlds are also compiled into world images to time
+ * how long it takes to map one and play the first turn.
+ *
+ * Each benchmark is warmed up first and then measured over several rounds.
+ * The report shows the average time per operation and the bytes allocated
+ * per operation, which is what JMH's "-prof gc" reports as gc.alloc.rate.norm.
+ *
+ * Run with: java Benchmark [roomsInLargeWorld]
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class Benchmark
+{
+    private static final long WARMUP_NANOS = 1_000_000_000L;     // Warm-up time per benchmark
+    private static final long ROUND_NANOS = 1_000_000_000L;      // Time per measured round
+    private static final int ROUNDS = 5;                         // Number of measured rounds
+    private static final int DEFAULT_LARGE_WORLD = 100_000;      // Rooms in the generated world
+    private static final int DUMP_ITEMS = 10_000;                // Items in the dump room
+    private static final int QUEST_ITEMS = 500;                  // Required items in the long quest
+    private static final int WANDERERS = 10_000;                 // Wandering characters in the crowd
+
+    private static final String[] JEWELS =
+    {"Ruby", "Pearl", "Emerald", "Diamond", "Sapphire", "Topaz", "Amethyst", "Moonstone"};
+
+    private static volatile Object sink;    // Keeps results alive so the JIT cannot drop the work
+
+    /**
+     * One operation to be measured.
+     */
+    private interface Operation
+    {
+        /**
+         * Run the operation once.
+         *
+         * @param i The number of the invocation, used to alternate between commands.
+         * @return A result that must not be optimised away.
+         */
+        Object run(long i);
+    }
+
+    /**
+     * Run all benchmarks and print a report.
+     *
+     * @param args Optional number of rooms in the large world.
+     */
+    public static void main(String[] args)
+    {
+        int largeRooms = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LARGE_WORLD;
+        System.out.printf("%-34s %-10s %14s %14s%n", "Benchmark", "World", "ns/op", "B/op");
+
+        runAll("stock", GameEngine::new, "north", "south", "Mango");
+        World large = loadLargeWorld(largeRooms);
+        runAll("large", () -> new GameEngine(large), "east", "west", "Stone");
+        wanderers(large);
+        dumpRoom();
+        longQuest();
+        openImage("stock", World.stock());
+        openImage("large", large);
+    }
+
+    /**
+     * Run every benchmark on one world.
+     *
+     * In both worlds the player starts one step away from a room holding a
+     * pickable item, and the temple lies north of that room.
+     *
+     * @param world The name of the world for the report.
+     * @param worldFactory Creates a game on the world.
+     * @param there The direction from the start to the item room.
+     * @param away The direction back from the item room.
+     * @param item A pickable item in the item room.
+     */
+    private static void runAll(String world, Supplier<GameEngine> worldFactory, String there, String away, String item)
+    {
+        // The text of each turn is rendered as usual but then discarded
+        Supplier<GameEngine> factory = () -> {
+            GameEngine engine = worldFactory.get();
+            engine.setOutput(turn -> { });
+            return engine;
+        };
+
+        measure("new session + first turn", world, i -> factory.get().start());
+
+        Parser parser = new Parser();
+        String goLine = "go " + there;
+        measure("parse", world, i -> parser.parse((i & 1) == 0 ? goLine : "give mango stranger"));
+        Command reused = new Command();
+        measure("parse (reused command)", world, i -> parser.parse((i & 1) == 0 ? goLine : "give mango stranger", reused));
+
+        GameEngine dispatch = factory.get();
+        Command inventory = parser.parse("inventory");
+        measure("dispatch (inventory)", world, i -> dispatch.step(inventory));
+
+        GameEngine walker = factory.get();
+        Command goThere = parser.parse("go " + there);
+        Command goBack = parser.parse("go " + away);
+        measure("go turn with render", world, i -> walker.step((i & 1) == 0 ? goThere : goBack));
+
+        GameEngine traveller = factory.get();
+        Command toTempleByName = parser.parse("travel temple of jewels");
+        Command toStart = parser.parse("travel " + traveller.getCurrentRoom().getName());
+        measure("travel to temple and back", world, i -> traveller.step((i & 1) == 0 ? toTempleByName : toStart));
+
+        GameEngine taker = factory.get();
+        taker.step(goThere);
+        Command take = parser.parse("take " + item);
+        Command drop = parser.parse("drop " + item);
+        measure("take/drop", world, i -> taker.step((i & 1) == 0 ? take : drop));
+
+        GameEngine original = factory.get();
+        original.step(goThere);
+        original.step(take);
+        measure("fork + go turn", world, i -> original.fork().step(goBack));
+
+        GameEngine pilgrim = factory.get();
+        pilgrim.step(goThere);
+        Command toTemple = parser.parse("go north");
+        Command fromTemple = parser.parse("go south");
+        measure("temple win check", world, i -> pilgrim.step((i & 1) == 0 ? toTemple : fromTemple));
+    }
+
+    /**
+     * Warm up and measure one operation, then print its line of the report.
+     *
+     * @param name The name of the benchmark.
+     * @param world The name of the world.
+     * @param operation The operation to measure.
+     */
+    private static void measure(String name, String world, Operation operation)
+    {
+        long i = 0;
+        long end = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < end) {
+            sink = operation.run(i++);
+        }
+
+        long operations = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            end = start + ROUND_NANOS;
+            long now = start;
+            long count = 0;
+            while (now < end) {
+                for (int batch = 0; batch < 1000; batch++) {
+                    sink = operation.run(i++);
+                }
+                count += 1000;
+                now = System.nanoTime();
+            }
+            nanos += now - start;
+            bytes += allocatedBytes() - allocatedBefore;
+            operations += count;
+        }
+        System.out.printf("%-34s %-10s %14.1f %14.1f%n", name, world,
+            (double) nanos / operations, (double) bytes / operations);
+    }
+
+    /**
+     * @return The number of bytes the current thread has allocated so far.
+     */
+    private static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Generate a square grid world as world-file text. Rooms are linked
+     * north, east, south and west to their neighbours and each room holds a
+     * pickable stone. The player starts in the first room, the room east of
+     * it holds a stone and the temple lies north of that room. The eight
+     * jewels are spread over the grid.
+     *
+     * @param roomCount The approximate number of rooms.
+     * @return The text of the world file.
+     */
+    private static String generateLargeWorld(int roomCount)
+    {
+        int width = Math.max(2, (int) Math.sqrt(roomCount));
+        int height = Math.max(2, (roomCount + width - 1) / width);
+        int rooms = width * height;
+        int temple = width + 1;
+        StringBuilder text = new StringBuilder(rooms * 160);
+        for (int r = 0; r < rooms; r++) {
+            if (r == temple) {
+                text.append("room r").append(r).append(" | Temple of Jewels | in the temple of jewels\n");
+            }
+            else {
+                text.append("room r").append(r).append(" | Room ").append(r)
+                    .append(" | in room ").append(r).append(" of a sprawling maze\n");
+            }
+        }
+        for (int r = 0; r < rooms; r++) {
+            text.append("item r").append(r).append(" | Stone | A plain stone | 10 | pickable\n");
+            int x = r % width;
+            int y = r / width;
+            if (y + 1 < height) text.append("exit r").append(r).append(" north r").append(r + width).append('\n');
+            if (x + 1 < width) text.append("exit r").append(r).append(" east r").append(r + 1).append('\n');
+            if (y > 0) text.append("exit r").append(r).append(" south r").append(r - width).append('\n');
+            if (x > 0) text.append("exit r").append(r).append(" west r").append(r - 1).append('\n');
+        }
+        for (int j = 0; j < JEWELS.length; j++) {
+            long room = (long) rooms * (j + 1) / (JEWELS.length + 1);
+            text.append("item r").append(room).append(" | ").append(JEWELS[j]).append(" | A precious jewel | 100 | pickable\n");
+        }
+        text.append("start r0\n");
+        text.append("goal r").append(temple).append(" | ").append(String.join(" ", JEWELS)).append('\n');
+        text.append("character guardian r").append(temple)
+            .append(" | Guardian of Jewels | A wise and ancient being. | The Guardian says: 'Give me my jewels.'\n");
+        text.append("character stranger * | Stranger | A mysterious figure. | The Stranger says: 'Any fruit?'\n");
+        return text.toString();
+    }
+
+    /**
+     * Load a generated world and report how long loading took.
+     *
+     * @param roomCount The approximate number of rooms.
+     * @return The world.
+     */
+    private static World loadLargeWorld(int roomCount)
+    {
+        String text = generateLargeWorld(roomCount);
+        try {
+            long start = System.nanoTime();
+            World world = new WorldLoader().load("large", new StringReader(text));
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-34s %-10s %14.1f %14s%n", "load world (ms, " + world.getRoomCount() + " rooms)",
+                "large", elapsed / 1e6, "-");
+            return world;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Measure one tick of WANDERERS characters wandering a world.
+     *
+     * @param world The world.
+     */
+    private static void wanderers(World world)
+    {
+        CharacterScheduler crowd = new CharacterScheduler(world, new RoomOccupancy());
+        for (int i = 0; i < WANDERERS; i++) {
+            crowd.add(new Character("Wanderer" + i, "A wanderer", ""));
+        }
+        crowd.setSeed(42);
+        measure("tick (" + WANDERERS + " wanderers)", "large", i -> { crowd.tick(); return crowd; });
+        crowd.setParallel(true);
+        measure("tick (" + WANDERERS + " wanderers, parallel)", "large", i -> { crowd.tick(); return crowd; });
+    }
+
+    /**
+     * Measure taking and dropping items in a room that holds DUMP_ITEMS
+     * items, both an item the world put there and one the player dropped,
+     * and in a room that DUMP_ITEMS items were dropped into.
+     */
+    private static void dumpRoom()
+    {
+        StringBuilder text = new StringBuilder(DUMP_ITEMS * 48);
+        text.append("room dump | Dump | in a dump piled high with scrap\n");
+        for (int i = 0; i < DUMP_ITEMS; i++) {
+            text.append("item dump | Scrap").append(i).append(" | A piece of scrap | 1 | pickable\n");
+        }
+        text.append("room shed | Shed | in a shed\n");
+        text.append("item shed | Spanner | A spanner | 1 | pickable\n");
+        text.append("exit shed east dump\n");
+        text.append("start shed\n");
+        text.append("goal shed | Spanner\n");
+        World dump;
+        try {
+            dump = new WorldLoader().load("dump", new StringReader(text.toString()));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Parser parser = new Parser();
+        GameEngine engine = new GameEngine(dump);
+        engine.setOutput(turn -> { });
+        engine.step(parser.parse("take spanner"));
+        engine.step(parser.parse("go east"));
+        Command take = parser.parse("take scrap" + (DUMP_ITEMS - 1));
+        Command drop = parser.parse("drop SCRAP" + (DUMP_ITEMS - 1));
+        measure("take/drop (" + DUMP_ITEMS + "-item room)", "dump", i -> engine.step((i & 1) == 0 ? take : drop));
+
+        engine.step(parser.parse("drop spanner"));
+        Command takeDropped = parser.parse("take SPANNER");
+        Command dropDropped = parser.parse("drop spanner");
+        measure("take/drop dropped item", "dump", i -> engine.step((i & 1) == 0 ? takeDropped : dropDropped));
+
+        int from = dump.findRoom("dump");
+        int shed = dump.findRoom("shed");
+        int first = dump.getFirstItem(from);
+        measure("drop " + DUMP_ITEMS + " items in one room", "dump", i -> {
+            ItemPlacements filled = new ItemPlacements(dump);
+            for (int item = first; item < first + DUMP_ITEMS; item++) {
+                filled.moveTo(dump.getItem(item), shed);
+            }
+            return filled;
+        });
+
+        ItemPlacements piled = new ItemPlacements(dump);
+        for (int item = first; item < first + DUMP_ITEMS; item++) {
+            piled.moveTo(dump.getItem(item), shed);
+        }
+        Item last = dump.getItem(first + DUMP_ITEMS - 1);
+        measure("take/drop (" + DUMP_ITEMS + " dropped items)", "dump", i -> {
+            if ((i & 1) == 0) {
+                piled.moveTo(piled.findArrival(shed, "SCRAP" + (DUMP_ITEMS - 1)), ItemPlacements.NOWHERE);
+            }
+            else {
+                piled.moveTo(last, shed);
+            }
+            return piled;
+        });
+    }
+
+    /**
+     * Measure the win check and the listing of missing items for a player
+     * who carries all but two of QUEST_ITEMS required items.
+     */
+    private static void longQuest()
+    {
+        List<String> required = new ArrayList<>();
+        for (int i = 0; i < QUEST_ITEMS; i++) {
+            required.add("Relic" + i);
+        }
+        Player player = new Player("Player", Integer.MAX_VALUE, new WinCondition(required));
+        for (int i = 2; i < QUEST_ITEMS; i++) {
+            player.addItem(new Item(i, "Relic" + i, "A relic", 1, true));
+        }
+        measure("has all required items", QUEST_ITEMS + " req", i -> player.hasAllJewels());
+        measure("list missing items", QUEST_ITEMS + " req", i -> player.getMissingJewels());
+    }
+
+    /**
+     * Compile a world into a world image, then report how long it takes to
+     * map the image and play the first turn of a new session on it.
+     *
+     * @param name The name of the world for the report.
+     * @param world The world.
+     */
+    private static void openImage(String name, World world)
+    {
+        try {
+            Path image = Files.createTempFile("benchmark", ".wimg");
+            image.toFile().deleteOnExit();
+            MappedWorld.write(world, image);
+            long start = System.nanoTime();
+            GameEngine engine = new GameEngine(MappedWorld.open(image));
+            engine.setOutput(turn -> { });
+            sink = engine.start();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-34s %-10s %14.1f %14s%n", "map image + first turn (ms)", name, elapsed / 1e6, "-");
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
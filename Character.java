@@ -1,19 +1,15 @@
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * This class represents a non-playable character (NPC) in the game.
- * It holds information such as the character's name, description, dialogue and current room.
- * 
+ * It holds information such as the character's name, description and dialogue.
+ * The room the character is in is kept by the session's RoomOccupancy.
  *
  * @author Jawhara Jannah
  * @version 1.0
  */
-public class Character {
+public class Character implements Occupant {
     private String name;            //The name of the character
     private String description;     // A short description of the character
     private String dialogue;        // Dialogue that the character says
-    private Room currentRoom;        // The room where the charcter is currently
 
     /**
      * Constructor to initialize the character with a name, description and dialogue
@@ -27,7 +23,6 @@ public class Character {
         this.name = name;                                
         this.description = description;     
         this.dialogue = dialogue;           
-        this.currentRoom = null;            // initially there is no assigned room         
     }
 
     /**
@@ -54,24 +49,6 @@ public class Character {
         return dialogue;
     }
 
-    /**
-     * @return The room where the character is currently located.
-     */
-    public Room getCurrentRoom() 
-    {
-        return currentRoom;
-    }
-
-    /**
-     * Set the room where the character is located
-     * 
-     * @param room The room where the character should be placed
-     */
-    public void setCurrentRoom(Room room) 
-    {
-        this.currentRoom = room;
-    }
-
     /**
      * Set a new decription for the character
      * 
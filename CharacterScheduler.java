@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Moves the wandering characters of one game session. Every turn is one
+ * tick, and in every tick each wandering character takes a random exit
+ * of the room it is in. A character is placed in a random room on the
+ * first tick and stays where it is in a room without exits.
+ *
+ * A tick works in two phases. First the new room of every character is
+ * chosen; this only reads the world, so for many characters it can be done
+ * in parallel. Then the characters are moved one by one, leaving their old
+ * rooms and entering their new ones in the session's RoomOccupancy.
+ *
+ * The characters are split into batches of BATCH characters and every
+ * batch draws from its own random generator, split from the session's
+ * generator. A seeded session therefore moves its characters in the same
+ * way whether the tick runs in parallel or not.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class CharacterScheduler
+{
+    private static final int BATCH = 1024;                  // Characters that share one random generator in a tick
+    private static final int PARALLEL_THRESHOLD = 8192;     // Fewest characters for which a tick runs in parallel
+
+    private World world;                    // The world the characters wander
+    private RoomOccupancy occupancy;        // Who is in the session's rooms
+    private Character[] characters;         // The wandering characters
+    private int[] slots;                    // The slot of each character in the occupancy
+    private int[] positions;                // The room of each character, or -1 before the first tick
+    private int[] moves;                    // The room each character moves to in the current tick
+    private int count;                      // The number of wandering characters
+    private SplittableRandom random;        // The source of the session's random moves
+    private boolean parallel;               // Whether large ticks may run in parallel
+
+    /**
+     * Create a scheduler without characters.
+     *
+     * @param world The world the characters wander.
+     * @param occupancy Who is in the session's rooms.
+     */
+    public CharacterScheduler(World world, RoomOccupancy occupancy)
+    {
+        this.world = world;
+        this.occupancy = occupancy;
+        characters = new Character[4];
+        slots = new int[4];
+        positions = new int[4];
+        moves = new int[4];
+        count = 0;
+        random = new SplittableRandom();
+        parallel = false;
+    }
+
+    /**
+     * Add a wandering character. It is placed on the next tick.
+     *
+     * @param character The character.
+     */
+    public void add(Character character)
+    {
+        if (count == characters.length) {
+            characters = Arrays.copyOf(characters, count * 2);
+            slots = Arrays.copyOf(slots, count * 2);
+            positions = Arrays.copyOf(positions, count * 2);
+            moves = Arrays.copyOf(moves, count * 2);
+        }
+        characters[count] = character;
+        slots[count] = occupancy.register(character);
+        positions[count] = -1;
+        count++;
+    }
+
+    /**
+     * @return The number of wandering characters.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param i The number of a character, in the order they were added.
+     * @return The room of the character, or -1 if it has not been placed yet.
+     */
+    public int getPosition(int i)
+    {
+        return positions[i];
+    }
+
+    /**
+     * Put a character in a room, for example when a saved game is loaded.
+     *
+     * @param i The number of a character, in the order they were added.
+     * @param room The number of the room, or -1 to place it on the next tick.
+     */
+    public void setPosition(int i, int room)
+    {
+        if (room >= 0) {
+            occupancy.enter(slots[i], room);
+        }
+        else {
+            occupancy.leave(characters[i]);
+        }
+        positions[i] = room;
+    }
+
+    /**
+     * Go on drawing moves from the random generator of another scheduler,
+     * so that a session that is set up again keeps its random events.
+     *
+     * @param other The scheduler the session used before.
+     */
+    void continueFrom(CharacterScheduler other)
+    {
+        random = other.random;
+        parallel = other.parallel;
+    }
+
+    /**
+     * Draw moves from a generator split from the generator of another
+     * scheduler, so that a forked session has random events of its own
+     * that are still the same on every replay.
+     *
+     * @param other The scheduler of the session that was forked.
+     */
+    void splitFrom(CharacterScheduler other)
+    {
+        random = other.random.split();
+        parallel = other.parallel;
+    }
+
+    /**
+     * Seed the random moves, so that a session can be replayed.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed)
+    {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Let ticks of PARALLEL_THRESHOLD or more characters choose their
+     * moves on several threads. The moves are the same either way.
+     *
+     * @param parallel true to allow parallel ticks.
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Move every wandering character once.
+     */
+    public void tick()
+    {
+        int batches = (count + BATCH - 1) / BATCH;
+        if (batches == 1) {
+            chooseMoves(0, random);
+        }
+        else if (batches > 1) {
+            SplittableRandom[] streams = new SplittableRandom[batches];
+            for (int b = 0; b < batches; b++) {
+                streams[b] = random.split();
+            }
+            IntStream batchNumbers = IntStream.range(0, batches);
+            if (parallel && count >= PARALLEL_THRESHOLD) {
+                batchNumbers = batchNumbers.parallel();
+            }
+            batchNumbers.forEach(b -> chooseMoves(b, streams[b]));
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (moves[i] != positions[i]) {
+                occupancy.enter(slots[i], moves[i]);
+                positions[i] = moves[i];
+            }
+        }
+    }
+
+    /**
+     * Choose the next room of each character of a batch.
+     *
+     * @param batch The number of the batch.
+     * @param random The batch's random generator.
+     */
+    private void chooseMoves(int batch, SplittableRandom random)
+    {
+        int end = Math.min(count, (batch + 1) * BATCH);
+        for (int i = batch * BATCH; i < end; i++) {
+            int from = positions[i];
+            if (from < 0) {
+                moves[i] = random.nextInt(world.getRoomCount());
+            }
+            else {
+                int first = world.getFirstExit(from);
+                int exits = world.getFirstExit(from + 1) - first;
+                moves[i] = exits == 0 ? from : world.getExitTarget(first + random.nextInt(exits));
+            }
+        }
+    }
+}
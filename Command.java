@@ -1,74 +1,176 @@
+import java.util.Arrays;
+
 /**
  * This class holds information about a command that was issued by the user.
- * A command currently consists of two strings: a command word and a second
- * word (for example, if the command was "take map", then the two strings
- * obviously are "take" and "map").
- * 
+ * A command consists of a command word followed by any number of further
+ * words (for example, if the command was "give mango stranger", then the
+ * words are "give", "mango" and "stranger").
+ *
  * The way this is used is: Commands are already checked for being valid
  * command words. If the user entered an invalid command (a word that is not
- * known) then the command word is <null>.
+ * known) then the command word is UNKNOWN.
  *
  * If the command had only one word, then the second word is <null>.
- * 
+ *
+ * A command filled by the Parser only records where each word starts and
+ * ends in the input line. A word is copied into a String the first time it
+ * is asked for, so one Command can be reused for every line of a session
+ * without allocating.
+ *
  * @author  Michael Kölling and David J. Barnes
- * @author
- * @version 2.0
+ * @author Jawhara Jannah
+ * @version 3.0
  */
 
 public class Command
 {
-    private String commandWord;
-    private String secondWord;
-    private String thirdWord;
+    private CommandWord commandWord;    // The resolved command word
+    private CharSequence line;          // The line the words were found in
+    private int[] starts;               // Start of each word in the line
+    private int[] ends;                 // End (exclusive) of each word in the line
+    private String[] words;             // Words already copied out of the line
+    private int wordCount;              // The number of words in the command
+
+    /**
+     * Create an empty command, to be filled by Parser.parse(line, command).
+     */
+    public Command()
+    {
+        commandWord = CommandWord.UNKNOWN;
+        starts = new int[4];
+        ends = new int[4];
+        words = new String[4];
+        wordCount = 0;
+    }
 
     /**
      * Create a command object. First and second word must be supplied, but
-     * either one (or both) can be null.
-     * @param firstWord The first word of the command. Null if the command was not recognised.
+     * the second (or third) can be null.
+     * @param commandWord The CommandWord. UNKNOWN if the command word
+     *                  was not recognised.
      * @param secondWord The second word of the command.
      * @param thirdWord The third word of the command
      */
-    public Command(String firstWord, String secondWord, String thirdWord)
+    public Command(CommandWord commandWord, String secondWord, String thirdWord)
+    {
+        this();
+        this.commandWord = commandWord;
+        words[0] = commandWord.toString();
+        wordCount = 1;
+        if (secondWord != null) {
+            words[wordCount++] = secondWord;
+            if (thirdWord != null) {
+                words[wordCount++] = thirdWord;
+            }
+        }
+    }
+
+    /**
+     * Start filling this command from a new line. Any words of the previous
+     * line are forgotten.
+     *
+     * @param line The line the words are found in.
+     */
+    void reset(CharSequence line)
+    {
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = null;
+        }
+        this.line = line;
+        this.wordCount = 0;
+        this.commandWord = CommandWord.UNKNOWN;
+    }
+
+    /**
+     * Record the position of the next word in the line.
+     *
+     * @param start The index of the word's first character.
+     * @param end The index after the word's last character.
+     */
+    void addWord(int start, int end)
     {
-        commandWord = firstWord;
-        this.secondWord = secondWord;
-        this.thirdWord = thirdWord;
+        if (wordCount == starts.length) {
+            int capacity = wordCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            words = Arrays.copyOf(words, capacity);
+        }
+        starts[wordCount] = start;
+        ends[wordCount] = end;
+        wordCount++;
+    }
+
+    /**
+     * Set the resolved command word.
+     *
+     * @param commandWord The command word.
+     */
+    void setCommandWord(CommandWord commandWord)
+    {
+        this.commandWord = commandWord;
     }
 
     /**
      * Return the command word (the first word) of this command. If the
-     * command was not understood, the result is null.
+     * command was not understood, the result is UNKNOWN.
      * @return The command word.
      */
-    public String getCommandWord()
+    public CommandWord getCommandWord()
     {
         return commandWord;
     }
 
+    /**
+     * @return The number of words in this command, including the command word.
+     */
+    public int getWordCount()
+    {
+        return wordCount;
+    }
+
+    /**
+     * Return a word of this command. Word 0 is the command word as typed.
+     *
+     * @param index The number of the word.
+     * @return The word, or null if the command has fewer words.
+     */
+    public String getWord(int index)
+    {
+        if (index >= wordCount) {
+            return null;
+        }
+        String word = words[index];
+        if (word == null) {
+            word = line.subSequence(starts[index], ends[index]).toString();
+            words[index] = word;
+        }
+        return word;
+    }
+
     /**
      * @return The second word of this command. Returns null if there was no
      * second word.
      */
     public String getSecondWord()
     {
-        return secondWord;
+        return getWord(1);
     }
 
     /**
      * @return The third word of this command. Returns null if there was no
      * third word.
      */
-    public String getThirdWord() 
+    public String getThirdWord()
     {
-        return thirdWord;
+        return getWord(2);
     }
-    
+
     /**
      * @return true if this command was not understood.
      */
     public boolean isUnknown()
     {
-        return (commandWord == null);
+        return (commandWord == CommandWord.UNKNOWN);
     }
 
     /**
@@ -76,16 +178,15 @@ public class Command
      */
     public boolean hasSecondWord()
     {
-        return (secondWord != null);
+        return wordCount > 1;
     }
-    
+
     /**
      * @return true if the command has a third word.
      */
-    public boolean hasThirdWord() 
+    public boolean hasThirdWord()
     {
-        return thirdWord != null;
+        return wordCount > 2;
     }
-    
-}
 
+}
@@ -0,0 +1,18 @@
+/**
+ * A handler executes one kind of command in a GameEngine.
+ * Handlers are registered against a CommandWord, and the engine looks
+ * them up in a table indexed by that word.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public interface CommandHandler
+{
+    /**
+     * Execute the command.
+     *
+     * @param command The command to execute. Its command word is the one
+     *                the handler was registered for.
+     */
+    void execute(Command command);
+}
@@ -0,0 +1,718 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead journal of the commands of the games on a server, so that
+ * the games can be rebuilt after the server process dies.
+ *
+ * Every game is identified by a number and belongs to one of SHARDS
+ * shards. Each shard appends to its own segment files in its own directory
+ * and has its own writer thread. A game's records are:
+ *
+ *   start      the game began, with the seed of its random events
+ *   command    a line the player sent, journalled before it is executed
+ *   snapshot   the game saved by GameEngine.save(), with a new seed
+ *   end        the game is over and need not be rebuilt
+ *
+ * Commits are grouped: a session adds its record to the shard's pending
+ * bytes and waits, while the writer writes everything that is pending with
+ * one write and one fsync and then wakes every session whose record it
+ * contained. However many sessions play, a shard therefore makes one fsync
+ * at a time, and durability does not limit the number of turns per second
+ * to the number of fsyncs.
+ *
+ * A segment is rolled once it holds SEGMENT_SIZE bytes. After that, every
+ * game of the shard whose latest start or snapshot is in an older segment
+ * is asked for a snapshot on its next turn, and a segment is deleted as
+ * soon as no running game needs it any more. The journal is compacted in
+ * the same way when it is started after recovery.
+ *
+ * Each record is framed by its length and a CRC-32C checksum. A record cut
+ * short by a crash fails its checksum, and recovery stops reading that
+ * segment there.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class CommandJournal
+{
+    public static final int SHARDS = 4;                     // The number of shards, each with its own writer
+
+    private static final int MAGIC = 0x4A484A4C;            // "JHJL", the first bytes of a segment
+    private static final int VERSION = 1;                   // The version of the segment format
+    private static final int HEADER = 20;                   // The bytes of a segment's header
+    private static final long SEGMENT_SIZE = 8 << 20;       // The size at which a segment is rolled
+    private static final int START = 0;                     // A game began
+    private static final int COMMAND = 1;                   // A player sent a line
+    private static final int SNAPSHOT = 2;                  // A game was saved
+    private static final int END = 3;                       // A game is over
+
+    private Path directory;                 // The directory with a subdirectory for each shard
+    private World world;                    // The world the games are played on
+    private AtomicLong nextSegment;         // The number of the next segment, in any shard
+    private Shard[] shards;                 // The shards, once the journal is started
+
+    /**
+     * Create a journal in a directory. Nothing is read or written until
+     * the journal is recovered or started.
+     *
+     * @param directory The directory of the journal.
+     * @param world The world the games are played on.
+     */
+    public CommandJournal(Path directory, World world)
+    {
+        this.directory = directory;
+        this.world = world;
+        nextSegment = new AtomicLong(1);
+    }
+
+    /**
+     * Read the journal left by an earlier server and find the games that
+     * were not over. This must be done before the journal is started.
+     *
+     * @return The unfinished games, in the order of their numbers.
+     * @throws IOException If the journal cannot be read or was written for another world.
+     */
+    public List<Recovered> recover() throws IOException
+    {
+        List<Path> segments = new ArrayList<>();
+        for (int s = 0; s < SHARDS; s++) {
+            Path shardDirectory = directory.resolve("shard-" + s);
+            if (Files.isDirectory(shardDirectory)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shardDirectory, "*.log")) {
+                    for (Path file : files) {
+                        if (getSegmentNumber(file) > 0) {
+                            segments.add(file);
+                        }
+                    }
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(CommandJournal::getSegmentNumber));
+
+        Map<Long, Recovered> games = new TreeMap<>();
+        for (Path segment : segments) {
+            nextSegment.set(Math.max(nextSegment.get(), getSegmentNumber(segment) + 1));
+            readSegment(segment, games);
+        }
+        return new ArrayList<>(games.values());
+    }
+
+    /**
+     * Start a new segment in every shard and the shards' writers. The
+     * segments of an earlier server are kept until compact() finds that no
+     * game needs them.
+     *
+     * @throws IOException If the segments cannot be created.
+     */
+    public void start() throws IOException
+    {
+        shards = new Shard[SHARDS];
+        for (int s = 0; s < SHARDS; s++) {
+            shards[s] = new Shard(s);
+        }
+        for (Shard shard : shards) {
+            shard.writer.start();
+        }
+    }
+
+    /**
+     * Journal the start of a game. This does not wait for the disk; the
+     * game's first command does.
+     *
+     * @param game The number of the game.
+     * @param seed The seed the game's random events were started with.
+     * @throws IOException If the journal has failed.
+     */
+    public void logStart(long game, long seed) throws IOException
+    {
+        SaveStream record = newRecord(START, game);
+        record.writeLong(seed);
+        getShard(game).append(record.toByteArray(), game, START, false);
+    }
+
+    /**
+     * Journal a line sent by a player and wait until it is on disk, so that
+     * it is journalled before it is executed.
+     *
+     * @param game The number of the game.
+     * @param line The line.
+     * @throws IOException If the journal has failed.
+     */
+    public void logCommand(long game, String line) throws IOException
+    {
+        SaveStream record = newRecord(COMMAND, game);
+        record.writeString(line);
+        getShard(game).append(record.toByteArray(), game, COMMAND, true);
+    }
+
+    /**
+     * Journal the state of a game, so that the game can be rebuilt without
+     * the records before it. This does not wait for the disk; the next
+     * command does.
+     *
+     * @param game The number of the game.
+     * @param seed The seed the game's random events go on from.
+     * @param saved The game, as saved by GameEngine.save().
+     * @throws IOException If the journal has failed.
+     */
+    public void logSnapshot(long game, long seed, byte[] saved) throws IOException
+    {
+        SaveStream record = newRecord(SNAPSHOT, game);
+        record.writeLong(seed);
+        record.writeBytes(saved);
+        getShard(game).append(record.toByteArray(), game, SNAPSHOT, false);
+    }
+
+    /**
+     * Journal that a game is over. This does not wait for the disk: a game
+     * whose end is lost is rebuilt and simply never resumed.
+     *
+     * @param game The number of the game.
+     * @throws IOException If the journal has failed.
+     */
+    public void logEnd(long game) throws IOException
+    {
+        getShard(game).append(newRecord(END, game).toByteArray(), game, END, false);
+    }
+
+    /**
+     * @param game The number of a running game.
+     * @return true if the game should be snapshot, because it still needs a
+     * segment that its shard has rolled past.
+     */
+    public boolean needsSnapshot(long game)
+    {
+        return getShard(game).needsSnapshot(game);
+    }
+
+    /**
+     * Wait until everything journalled is on disk, then delete the
+     * segments that no running game needs.
+     *
+     * @throws IOException If the journal has failed.
+     */
+    public void compact() throws IOException
+    {
+        for (Shard shard : shards) {
+            shard.sync();
+            shard.deleteOldSegments();
+        }
+    }
+
+    /**
+     * Write what is still pending and stop the writers.
+     */
+    public void close()
+    {
+        if (shards == null) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * @return The shard a game belongs to.
+     */
+    private Shard getShard(long game)
+    {
+        return shards[(int) Long.remainderUnsigned(game, SHARDS)];
+    }
+
+    /**
+     * @return A record with its type and game written.
+     */
+    private static SaveStream newRecord(int type, long game)
+    {
+        SaveStream record = new SaveStream();
+        record.writeNumber(type);
+        record.writeLong(game);
+        return record;
+    }
+
+    /**
+     * @return The number of a segment file, or 0 if it is not a segment.
+     */
+    private static long getSegmentNumber(Path file)
+    {
+        String name = file.getFileName().toString();
+        String digits = name.substring(0, name.length() - ".log".length());
+        if (digits.isEmpty() || digits.length() > 18 || !digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return 0;
+        }
+        return Long.parseLong(digits);
+    }
+
+    /**
+     * @return The header of a segment: the signature, the version and the size of the world.
+     */
+    private byte[] getHeader()
+    {
+        SaveStream header = new SaveStream();
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(world.getRoomCount());
+        header.writeInt(world.getItemCount());
+        header.writeInt(world.getCharacterCount());
+        return header.toByteArray();
+    }
+
+    /**
+     * Apply the records of a segment to the games found so far. Reading
+     * stops at the first record that is cut short or fails its checksum.
+     */
+    private void readSegment(Path segment, Map<Long, Recovered> games) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(segment);
+        if (bytes.length < HEADER) {
+            return;     // The server died while creating the segment
+        }
+        if (!Arrays.equals(bytes, 0, HEADER, getHeader(), 0, HEADER)) {
+            if (ByteBuffer.wrap(bytes).getInt() != MAGIC) {
+                throw new IOException(segment + " is not a journal segment");
+            }
+            throw new IOException(segment + " was written for another world or version");
+        }
+
+        ByteBuffer frames = ByteBuffer.wrap(bytes, HEADER, bytes.length - HEADER);
+        CRC32C checksum = new CRC32C();
+        while (frames.remaining() >= 8) {
+            int length = frames.getInt();
+            int expected = frames.getInt();
+            if (length < 0 || length > frames.remaining()) {
+                return;
+            }
+            checksum.reset();
+            checksum.update(bytes, frames.position(), length);
+            if ((int) checksum.getValue() != expected) {
+                return;
+            }
+            byte[] body = Arrays.copyOfRange(bytes, frames.position(), frames.position() + length);
+            frames.position(frames.position() + length);
+            applyRecord(new SaveStream(body), games, segment);
+        }
+    }
+
+    /**
+     * Apply one record to the games found so far.
+     */
+    private static void applyRecord(SaveStream record, Map<Long, Recovered> games, Path segment) throws IOException
+    {
+        int type = record.readNumber();
+        long game = record.readLong();
+        switch (type) {
+            case START:
+                games.put(game, new Recovered(game, record.readLong(), null));
+                break;
+            case COMMAND:
+                Recovered recovered = games.get(game);
+                if (recovered != null) {
+                    recovered.commands.add(record.readString());
+                }
+                break;
+            case SNAPSHOT:
+                long seed = record.readLong();
+                games.put(game, new Recovered(game, seed, record.readBytes()));
+                break;
+            case END:
+                games.remove(game);
+                break;
+            default:
+                throw new IOException("Unknown record " + type + " in " + segment);
+        }
+    }
+
+    /**
+     * A game found in the journal that was not over when the server died.
+     * It is rebuilt by loading its snapshot, or by starting it with its
+     * seed if there is none, and then executing its commands in order.
+     */
+    public static class Recovered
+    {
+        private final long game;                // The number of the game
+        private final long seed;                // The seed at the start or at the snapshot
+        private final byte[] snapshot;          // The game as saved, or null to start it afresh
+        private final List<String> commands;    // The lines sent since
+
+        /**
+         * Create a game found at its start or at a snapshot.
+         */
+        private Recovered(long game, long seed, byte[] snapshot)
+        {
+            this.game = game;
+            this.seed = seed;
+            this.snapshot = snapshot;
+            this.commands = new ArrayList<>();
+        }
+
+        /**
+         * @return The number of the game.
+         */
+        public long getGame()
+        {
+            return game;
+        }
+
+        /**
+         * @return The seed of the game's random events from its start or snapshot on.
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * @return The game as saved by GameEngine.save(), or null if it is
+         * rebuilt from its start.
+         */
+        public byte[] getSnapshot()
+        {
+            return snapshot;
+        }
+
+        /**
+         * @return The lines the player sent after the start or snapshot.
+         */
+        public List<String> getCommands()
+        {
+            return Collections.unmodifiableList(commands);
+        }
+    }
+
+    /**
+     * One shard: its current segment, the records waiting to be written and
+     * the writer thread that commits them in groups.
+     *
+     * Sessions run on virtual threads, so the shard waits with a
+     * ReentrantLock and conditions rather than with monitors, which would
+     * hold on to the threads that carry them.
+     */
+    private class Shard
+    {
+        private final int number;                       // The number of the shard
+        private final Path shardDirectory;              // Where the shard's segments are
+        private final ReentrantLock lock;               // Guards everything below that the writer shares
+        private final Condition work;                   // Signalled when records are pending or the shard closes
+        private final Condition written;                // Signalled when records are on disk
+        private final Thread writer;                    // Writes and syncs the pending records
+        private final Map<Long, Long> pins;             // The segment of each running game's start or snapshot
+        private byte[] pending;                         // The framed records waiting to be written
+        private int pendingLength;                      // The number of pending bytes
+        private byte[] spare;                           // The buffer the writer hands back
+        private long[] eventGames;                      // The game of each pending record
+        private byte[] eventTypes;                      // The type of each pending record
+        private int eventCount;                         // The number of pending records
+        private long appended;                          // The bytes journalled since the shard started
+        private long durable;                           // The bytes of those that are on disk
+        private long segment;                           // The number of the current segment
+        private long segmentSize;                       // The bytes in the current segment
+        private FileChannel channel;                    // The current segment, used by the writer only
+        private IOException failure;                    // Why the shard stopped writing, or null
+        private boolean closing;                        // Set when the shard is closed
+
+        /**
+         * Create a shard with a new segment. Its writer is not yet started.
+         */
+        Shard(int number) throws IOException
+        {
+            this.number = number;
+            shardDirectory = directory.resolve("shard-" + number);
+            lock = new ReentrantLock();
+            work = lock.newCondition();
+            written = lock.newCondition();
+            pins = new HashMap<>();
+            pending = new byte[4096];
+            spare = new byte[4096];
+            eventGames = new long[64];
+            eventTypes = new byte[64];
+            Files.createDirectories(shardDirectory);
+            openSegment();
+            writer = new Thread(this::writeBatches, "journal-shard-" + number);
+            writer.setDaemon(true);
+        }
+
+        /**
+         * Add a record to the pending records.
+         *
+         * @param body The record.
+         * @param game The game of the record.
+         * @param type The type of the record.
+         * @param wait Whether to wait until the record is on disk.
+         * @throws IOException If the shard has failed or is closed.
+         */
+        void append(byte[] body, long game, int type, boolean wait) throws IOException
+        {
+            CRC32C checksum = new CRC32C();
+            checksum.update(body);
+            int size = 8 + body.length;
+            lock.lock();
+            try {
+                checkOpen();
+                if (pendingLength + size > pending.length) {
+                    pending = Arrays.copyOf(pending, Math.max(pendingLength + size, pending.length * 2));
+                }
+                ByteBuffer.wrap(pending, pendingLength, 8).putInt(body.length).putInt((int) checksum.getValue());
+                System.arraycopy(body, 0, pending, pendingLength + 8, body.length);
+                pendingLength += size;
+                if (eventCount == eventGames.length) {
+                    eventGames = Arrays.copyOf(eventGames, eventCount * 2);
+                    eventTypes = Arrays.copyOf(eventTypes, eventCount * 2);
+                }
+                eventGames[eventCount] = game;
+                eventTypes[eventCount] = (byte) type;
+                eventCount++;
+                appended += size;
+                work.signal();
+                if (wait) {
+                    awaitDurable(appended);
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true if a game's start or snapshot is in an older segment.
+         */
+        boolean needsSnapshot(long game)
+        {
+            lock.lock();
+            try {
+                Long pin = pins.get(game);
+                return pin != null && pin < segment;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait until everything journalled so far is on disk.
+         */
+        void sync() throws IOException
+        {
+            lock.lock();
+            try {
+                awaitDurable(appended);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait, holding the lock, until the bytes up to a point are on disk.
+         */
+        private void awaitDurable(long ticket) throws IOException
+        {
+            while (durable < ticket && failure == null) {
+                written.awaitUninterruptibly();
+            }
+            if (durable < ticket) {
+                checkOpen();
+            }
+        }
+
+        /**
+         * Throw if the shard can no longer write, holding the lock.
+         */
+        private void checkOpen() throws IOException
+        {
+            if (failure != null) {
+                throw new IOException("The journal of shard " + number + " failed", failure);
+            }
+            if (closing) {
+                throw new IOException("The journal is closed");
+            }
+        }
+
+        /**
+         * The writer: write and sync the pending records in one go, again
+         * and again, until the shard is closed and nothing is pending.
+         */
+        private void writeBatches()
+        {
+            while (true) {
+                byte[] batch;
+                int length;
+                long[] games;
+                byte[] types;
+                long ticket;
+                lock.lock();
+                try {
+                    while (pendingLength == 0 && !closing) {
+                        work.awaitUninterruptibly();
+                    }
+                    if (pendingLength == 0) {
+                        return;
+                    }
+                    batch = pending;
+                    length = pendingLength;
+                    pending = spare;
+                    pendingLength = 0;
+                    games = Arrays.copyOf(eventGames, eventCount);
+                    types = Arrays.copyOf(eventTypes, eventCount);
+                    eventCount = 0;
+                    ticket = appended;
+                }
+                finally {
+                    lock.unlock();
+                }
+
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch, 0, length);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+                catch (IOException e) {
+                    fail(e);
+                    return;
+                }
+                segmentSize += length;
+                spare = batch;
+
+                lock.lock();
+                try {
+                    for (int i = 0; i < games.length; i++) {
+                        if (types[i] == START || types[i] == SNAPSHOT) {
+                            pins.put(games[i], segment);
+                        }
+                        else if (types[i] == END) {
+                            pins.remove(games[i]);
+                        }
+                    }
+                    durable = ticket;
+                    written.signalAll();
+                }
+                finally {
+                    lock.unlock();
+                }
+
+                if (segmentSize >= SEGMENT_SIZE) {
+                    try {
+                        FileChannel full = channel;
+                        openSegment();
+                        full.close();
+                        deleteOldSegments();
+                    }
+                    catch (IOException e) {
+                        fail(e);
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Create the next segment with its header on disk.
+         */
+        private void openSegment() throws IOException
+        {
+            long next = nextSegment.getAndIncrement();
+            Path file = shardDirectory.resolve(String.format("%012d.log", next));
+            FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            created.write(ByteBuffer.wrap(getHeader()));
+            created.force(true);
+            channel = created;
+            segmentSize = HEADER;
+            lock.lock();
+            try {
+                segment = next;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Delete the segments before the oldest one a running game needs.
+         */
+        void deleteOldSegments() throws IOException
+        {
+            long keep;
+            lock.lock();
+            try {
+                keep = segment;
+                for (long pin : pins.values()) {
+                    keep = Math.min(keep, pin);
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(shardDirectory, "*.log")) {
+                for (Path file : files) {
+                    long number = getSegmentNumber(file);
+                    if (number > 0 && number < keep) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stop writing after a failure and wake every waiting session.
+         */
+        private void fail(IOException e)
+        {
+            System.err.println("The journal of shard " + number + " failed: " + e.getMessage());
+            lock.lock();
+            try {
+                failure = e;
+                written.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Write what is pending, stop the writer and close the segment.
+         */
+        void close()
+        {
+            lock.lock();
+            try {
+                closing = true;
+                work.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+            try {
+                writer.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                // Everything written has been synced
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Representations for all the valid command words for the game
+ * along with a string in a particular language.
+ * 
+ * Command words are resolved once, when a line is parsed, so the rest of
+ * the game can dispatch on the enum instead of comparing strings.
+ * 
+ * @author  Michael Kölling and David J. Barnes
+ * @author Jawhara Jannah
+ * @version 2.0
+ */
+public enum CommandWord
+{
+    // A value for each command word along with its
+    // corresponding user interface string.
+    GO("go"), QUIT("quit"), HELP("help"), TAKE("take"), DROP("drop"), 
+    INVENTORY("inventory"), BACK("back"), UNDO("undo"), GIVE("give"), STATUS("status"), HINT("hint"),
+    TRAVEL("travel"), SAVE("save"), LOAD("load"), STATS("stats"), UNKNOWN("?");
+    
+    // The command string.
+    private String commandString;
+    
+    /**
+     * Initialise with the corresponding command string.
+     * @param commandString The command string.
+     */
+    CommandWord(String commandString)
+    {
+        this.commandString = commandString;
+    }
+    
+    /**
+     * @return The command word as a string.
+     */
+    public String toString()
+    {
+        return commandString;
+    }
+}
@@ -2,6 +2,10 @@
  * This class holds an enumeration of all command words known to the game.
  * It is used to recognise commands as they are typed in.
  *
+ * Command words are looked up straight from the characters of the input
+ * line, ignoring case, in a small open-addressing table. No lowercase copy
+ * of the word is made.
+ *
  * @author  Michael Kölling and David J. Barnes
  * @authot Jawhara Jannah
  * @version 2.0
@@ -9,9 +13,24 @@
 
 public class CommandWords
 {
-    // a constant array that holds all valid command words
-    private static final String[] validCommands = 
-    {"go", "quit", "help", "take", "drop", "inventory", "back"  , "give"};
+    // A hash table from command word strings to the CommandWord
+    // associated with them. Its size is a power of two of at least twice
+    // the number of words, so it always has free slots to end a search.
+    private static final CommandWord[] validCommands =
+        new CommandWord[Integer.highestOneBit(Math.max(2, CommandWord.values().length) * 4 - 1)];
+
+    static {
+        for(CommandWord command : CommandWord.values()) {
+            if(command != CommandWord.UNKNOWN) {
+                String word = command.toString();
+                int slot = hash(word, 0, word.length());
+                while(validCommands[slot] != null) {
+                    slot = (slot + 1) & (validCommands.length - 1);
+                }
+                validCommands[slot] = command;
+            }
+        }
+    }
 
     /**
      * Constructor - initialise the command words.
@@ -21,20 +40,60 @@ public class CommandWords
         
     }
 
+    /**
+     * Find the CommandWord associated with a command word.
+     * @param commandWord The word to look up.
+     * @return The CommandWord corresponding to commandWord, or UNKNOWN
+     *         if it is not a valid command word.
+     */
+    public CommandWord getCommandWord(String commandWord)
+    {
+        return getCommandWord(commandWord, 0, commandWord.length());
+    }
+
+    /**
+     * Find the CommandWord associated with a word inside a line of input,
+     * ignoring case.
+     * @param line The line holding the word.
+     * @param start The index of the word's first character.
+     * @param end The index after the word's last character.
+     * @return The CommandWord corresponding to the word, or UNKNOWN
+     *         if it is not a valid command word.
+     */
+    public CommandWord getCommandWord(CharSequence line, int start, int end)
+    {
+        int slot = hash(line, start, end);
+        CommandWord command;
+        while((command = validCommands[slot]) != null) {
+            if(matches(command.toString(), line, start, end)) {
+                return command;
+            }
+            slot = (slot + 1) & (validCommands.length - 1);
+        }
+        return CommandWord.UNKNOWN;
+    }
+
     /**
      * Check whether a given String is a valid command word. 
      * @return true if it is, false if it isn't.
      */
     public boolean isCommand(String aString)
     {
-        aString = aString.toLowerCase();    // Convert input to lowercase for case-insensitive comparison
-        
-        for(int i = 0; i < validCommands.length; i++) {
-            if(validCommands[i].equals(aString))
-                return true;
+        return getCommandWord(aString) != CommandWord.UNKNOWN;
+    }
+
+    /**
+     * @return All valid command words, separated by spaces.
+     */
+    public String getCommandList() 
+    {
+        StringBuilder list = new StringBuilder();
+        for(CommandWord command : CommandWord.values()) {
+            if(command != CommandWord.UNKNOWN) {
+                list.append(command).append("  ");
+            }
         }
-        // if we get here, the string was not found in the commands
-        return false;
+        return list.toString();
     }
 
     /**
@@ -42,10 +101,38 @@ public class CommandWords
      */
     public void showAll() 
     {
-        for(String command: validCommands) {
-            System.out.print(command + "  ");
+        System.out.println(getCommandList());
+    }
+
+    /**
+     * Hash a word without regard to case.
+     * @return The table slot where the search for the word starts.
+     */
+    private static int hash(CharSequence line, int start, int end)
+    {
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + java.lang.Character.toLowerCase(line.charAt(i));
+        }
+        hash ^= (hash >>> 16);
+        return hash & (validCommands.length - 1);
+    }
+
+    /**
+     * @return true if the word in the line equals the lowercase command
+     *         string, ignoring case.
+     */
+    private static boolean matches(String command, CharSequence line, int start, int end)
+    {
+        if(command.length() != end - start) {
+            return false;
+        }
+        for(int i = 0; i < command.length(); i++) {
+            if(command.charAt(i) != java.lang.Character.toLowerCase(line.charAt(start + i))) {
+                return false;
+            }
         }
-        System.out.println();
+        return true;
     }
     
 }
@@ -0,0 +1,31 @@
+import java.io.PrintStream;
+
+/**
+ * Writes a session's output to the terminal, one write per turn.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class ConsoleOutput implements OutputSink
+{
+    private PrintStream out;    // The terminal
+
+    /**
+     * Create a sink that writes to System.out.
+     */
+    public ConsoleOutput()
+    {
+        this.out = System.out;
+    }
+
+    /**
+     * Write the text of one turn to the terminal.
+     *
+     * @param turn The text of the turn.
+     */
+    public void writeTurn(TurnBuffer turn)
+    {
+        out.write(turn.array(), 0, turn.length());
+        out.flush();
+    }
+}
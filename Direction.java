@@ -0,0 +1,58 @@
+/**
+ * The directions an exit can lead in. Directions are listed in the order
+ * in which exits are shown to the player.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public enum Direction
+{
+    NORTH("north"), EAST("east"), SOUTH("south"), WEST("west"), UP("up"), DOWN("down");
+
+    private static final Direction[] ALL = values();   // All directions, by ordinal
+
+    private String word;    // The word the player types for this direction
+
+    /**
+     * Initialise a direction with the word the player types for it.
+     *
+     * @param word The direction's word.
+     */
+    Direction(String word)
+    {
+        this.word = word;
+    }
+
+    /**
+     * @return The word the player types for this direction.
+     */
+    public String toString()
+    {
+        return word;
+    }
+
+    /**
+     * Find the direction a word stands for, ignoring case.
+     *
+     * @param word The word typed by the player.
+     * @return The direction, or null if the word is not a direction.
+     */
+    public static Direction fromString(String word)
+    {
+        for (Direction direction : ALL) {
+            if (direction.word.equalsIgnoreCase(word)) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param ordinal The ordinal of a direction.
+     * @return The direction with that ordinal.
+     */
+    public static Direction of(int ordinal)
+    {
+        return ALL[ordinal];
+    }
+}
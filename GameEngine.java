@@ -0,0 +1,1276 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  The headless engine behind "Jewel Hunt".
+ *
+ *  A GameEngine holds the complete state of one game session: the rooms and
+ *  their items, the current room, the undo journal, the player and the
+ *  stranger. It never reads from or writes to the console. Instead every
+ *  command is executed with step(). The text of the turn is collected in
+ *  one reusable buffer and handed to the session's OutputSink when the
+ *  turn is over, and step() returns whether the game goes on.
+ *
+ *  Because all state is per instance, any number of games can be hosted in
+ *  one process. The console Game class is a thin adapter over this engine.
+ *  Sessions that are given TurnStatistics time every turn and its parts.
+ *
+ * @author  Michael Kölling and David J. Barnes
+ * @author  Jawhara Jannah
+ * @version 2.0
+ */
+public class GameEngine
+{
+    // The text of 'help' before the location, encoded once
+    private static final byte[] HELP_TEXT = ("\nYou are trapped here unless you find all the jewels\n"
+        + "Collect them and bring them to the Temple of Jewels.\n\n"
+        + "Your command words are:\n"
+        + new CommandWords().getCommandList() + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private static final int SAVE_MAGIC = 0x4A485356;       // "JHSV", the first bytes of a saved game
+    private static final int SAVE_VERSION = 2;              // The version of the saved game format
+    private static final int UNDO_CAPACITY = 256;           // The most actions 'undo' can take back
+
+    private World world;                                    // The definition of the world being played
+    private Room currentRoom;                               // Current room the player is in
+    private Room goalRoom;                                  //  The room the jewels must be brought to
+    private UndoJournal journal;                            //  The latest actions, for the 'back' and 'undo' commands
+    private RoomTable rooms;                                //  The rooms of the game, created when first needed
+    private RoomOccupancy occupancy;                        //  Who is in which room
+    private Player player;                                  //  The player
+    private Character[] characters;                         //  The characters of the game, in the order of the world
+    private Character stranger;                             //  A charcter who wanders the game
+    private Character templeGuardian;                       //  The guardian of the temple character
+    private QuestProgress progress;                         //  How many of the required jewels the player carries
+    private CommandWords commandWords;                      //  The command words, listed by 'help'
+    private CommandHandler[] handlers;                      //  The handler for each command word, indexed by ordinal
+    private boolean gameOver;                               //  Flag to track whether the game is over
+    private boolean won;                                    //  Flag to track whether the player has won
+    private TurnBuffer output;                              //  Collects the text produced during one turn
+    private OutputSink sink;                                //  Where the text of each turn goes
+    private String prompt;                                  //  Appended to every turn while the game goes on
+    private Path saveDirectory = Paths.get("saves");        //  Where 'save' and 'load' keep saved games
+    private boolean replaying;                              //  Whether 'save' leaves the saved games alone
+    private CharacterScheduler wanderers;                   //  Moves the wandering characters every turn
+    private TurnStatistics statistics;                      //  Where the times of the turns go, or null
+
+    /**
+     * Create a new game session on the stock Jewel Hunt world.
+     */
+    public GameEngine()
+    {
+        this(World.stock());
+    }
+
+    /**
+     * Create a new game session on a world and initialise its internal map.
+     *
+     * @param world The world to play.
+     */
+    public GameEngine(World world)
+    {
+        this.world = world;
+        output = new TurnBuffer();      // Initialize the turn output
+        sink = new MemoryOutput();      // Keep the output until another sink is set
+        createRooms();                  // Create rooms in the game
+        commandWords = new CommandWords();
+        gameOver = false;               // The game is initially not over
+        won = false;
+        journal = new UndoJournal(UNDO_CAPACITY);  // Initialize the undo journal
+        initializeCharacters();         // Initialize charcters (stranger and temple guardian)
+        registerHandlers();             // Build the command dispatch table
+    }
+
+    /**
+     * Create a copy of a session that plays on independently of it.
+     *
+     * @param from The session to copy.
+     */
+    private GameEngine(GameEngine from)
+    {
+        world = from.world;
+        output = new TurnBuffer();
+        sink = turn -> { };
+        commandWords = from.commandWords;
+        gameOver = from.gameOver;
+        won = from.won;
+        prompt = from.prompt;
+        saveDirectory = from.saveDirectory;
+        replaying = from.replaying;
+        journal = from.journal.copy();
+
+        // The characters can change, so the copy gets its own
+        occupancy = new RoomOccupancy();
+        rooms = new RoomTable(world, from.rooms.getItemPlacements().fork(), occupancy);
+        characters = new Character[from.characters.length];
+        for (int c = 0; c < characters.length; c++) {
+            Character original = from.characters[c];
+            characters[c] = new Character(original.getName(), original.getDescription(), original.getDialogue());
+            if (original == from.stranger) {
+                stranger = characters[c];
+            }
+            if (original == from.templeGuardian) {
+                templeGuardian = characters[c];
+            }
+            int room = from.occupancy.getRoom(original);
+            if (room >= 0) {
+                occupancy.enter(characters[c], room);
+            }
+        }
+        wanderers = new CharacterScheduler(world, occupancy);
+        for (int c = 0, i = 0; c < characters.length; c++) {
+            if (world.getCharacterRoom(c) < 0) {
+                wanderers.add(characters[c]);
+                wanderers.setPosition(i, from.wanderers.getPosition(i));
+                i++;
+            }
+        }
+        wanderers.splitFrom(from.wanderers);
+
+        player = from.player.fork();
+        progress = from.progress.fork(player);
+        goalRoom = rooms.get(world.getGoalRoom());
+        enterRoom(rooms.get(from.currentRoom.getId()));
+        registerHandlers();
+    }
+
+    /**
+     * Fork the session: create a copy that starts in exactly the same
+     * state and plays on independently, for example to try out moves.
+     * The item placements and the inventory are shared with this session
+     * until either side changes them, so forking takes constant time apart
+     * from copying the characters and the bounded undo journal. The copy discards
+     * its output until another sink is set, and has only the built-in
+     * command handlers.
+     *
+     * @return The copy.
+     */
+    public GameEngine fork()
+    {
+        return new GameEngine(this);
+    }
+
+    /**
+     * Create this session's room table. Rooms are only created, with
+     * their items, when the session first needs them, so a new session
+     * costs the same on a world of any size.
+     */
+    private void createRooms()
+    {
+        rooms = new RoomTable(world);
+        occupancy = rooms.getOccupancy();
+        wanderers = new CharacterScheduler(world, occupancy);
+
+        // Set the strating room, the goal and the player
+        goalRoom = rooms.get(world.getGoalRoom());
+        player = new Player("Player", 1000, world.getWinCondition());
+        enterRoom(rooms.get(world.getStartRoom()));
+        progress = new QuestProgress(player, world.getWinCondition());
+    }
+
+    /**
+     * Initializes the game characters. The character in the goal room
+     * guards it and the others stay in their rooms, except wandering
+     * characters. The first of these is the stranger.
+     */
+    private void initializeCharacters()
+    {
+        characters = new Character[world.getCharacterCount()];
+        for (int c = 0; c < characters.length; c++) {
+            Character character = world.createCharacter(c);
+            characters[c] = character;
+            int room = world.getCharacterRoom(c);
+            if (room == world.getGoalRoom() && templeGuardian == null) {
+                templeGuardian = character;
+            }
+            else if (room < 0) {
+                if (stranger == null) {
+                    stranger = character;
+                }
+                wanderers.add(character);
+            }
+            else if (room >= 0) {
+                occupancy.enter(character, room);
+            }
+        }
+    }
+
+    /**
+     * Build the dispatch table with the handlers of the built-in commands.
+     */
+    private void registerHandlers()
+    {
+        handlers = new CommandHandler[CommandWord.values().length];
+        registerHandler(CommandWord.HELP, command -> printHelp());
+        registerHandler(CommandWord.GO, this::goRoom);
+        registerHandler(CommandWord.QUIT, this::quit);
+        registerHandler(CommandWord.TAKE, this::takeItem);
+        registerHandler(CommandWord.DROP, this::dropItem);
+        registerHandler(CommandWord.INVENTORY, command -> showInventory());
+        registerHandler(CommandWord.BACK, command -> back());
+        registerHandler(CommandWord.UNDO, this::undo);
+        registerHandler(CommandWord.GIVE, this::giveItemToStranger);
+        registerHandler(CommandWord.STATUS, command -> showStatus());
+        registerHandler(CommandWord.HINT, command -> hint());
+        registerHandler(CommandWord.TRAVEL, this::travel);
+        registerHandler(CommandWord.SAVE, this::saveGame);
+        registerHandler(CommandWord.LOAD, this::loadGame);
+        registerHandler(CommandWord.STATS, command -> showStatistics());
+    }
+
+    /**
+     * Register the handler for a command word, replacing any handler that
+     * was registered for it before.
+     *
+     * @param commandWord The command word.
+     * @param handler The handler that executes commands with that word.
+     */
+    public final void registerHandler(CommandWord commandWord, CommandHandler handler)
+    {
+        handlers[commandWord.ordinal()] = handler;
+    }
+
+    /**
+     * Start the session. Produces the opening message and the description
+     * of the starting room.
+     *
+     * @return The result of the opening turn.
+     */
+    public TurnResult start()
+    {
+        output.reset();
+        printWelcome();
+        return endTurn();
+    }
+
+    /**
+     * Execute one turn: process the command and let the wandering
+     * characters move.
+     *
+     * @param command The command to be processed.
+     * @return The result of the turn, including all text it produced.
+     */
+    public TurnResult step(Command command)
+    {
+        output.reset();
+        if (gameOver) {
+            return endTurn();
+        }
+
+        if (statistics == null) {
+            processCommand(command);
+            if (!gameOver) {
+                wanderers.tick();
+            }
+        }
+        else {
+            timeTurn(command);
+        }
+
+        if (gameOver) {
+            // Game over message
+            println("\nThank you for playing!\n");
+            println("\nGood bye!\n");
+        }
+        return endTurn();
+    }
+
+    /**
+     * Process a command and let the wandering characters move, as step()
+     * does, recording how long each part takes.
+     *
+     * @param command The command to be processed.
+     */
+    private void timeTurn(Command command)
+    {
+        CommandWord commandWord = command.getCommandWord();
+        long start = System.nanoTime();
+        processCommand(command);
+        long processed = System.nanoTime();
+        statistics.recordCommand(commandWord, processed - start);
+        long end = processed;
+        if (!gameOver) {
+            wanderers.tick();
+            end = System.nanoTime();
+            statistics.recordCharacters(end - processed);
+        }
+        statistics.recordTurn(end - start);
+    }
+
+    /**
+     * Hand the text of the turn to the sink.
+     *
+     * @return The result of the turn that has just been processed.
+     */
+    private TurnResult endTurn()
+    {
+        if (!gameOver && prompt != null) {
+            output.append(prompt);
+        }
+        sink.writeTurn(output);
+        if (!gameOver) {
+            return TurnResult.CONTINUE;
+        }
+        return won ? TurnResult.WON : TurnResult.QUIT;
+    }
+
+    /**
+     * Set where the text of each turn goes. By default the text is kept
+     * in a MemoryOutput.
+     *
+     * @param sink The session's output sink.
+     */
+    public void setOutput(OutputSink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * @return The session's output sink.
+     */
+    public OutputSink getOutput()
+    {
+        return sink;
+    }
+
+    /**
+     * Time the turns of the session. Statistics can be shared by any
+     * number of sessions. Forks of the session do not time their turns.
+     *
+     * @param statistics Where the times go, or null to stop timing.
+     */
+    public void setStatistics(TurnStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    /**
+     * @return Where the times of the session's turns go, or null if they are not timed.
+     */
+    public TurnStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Set a prompt that ends every turn after which the game goes on.
+     *
+     * @param prompt The prompt, or null for none.
+     */
+    public void setPrompt(String prompt)
+    {
+        this.prompt = prompt;
+    }
+
+    /**
+     * Set the directory the 'save' and 'load' commands keep saved games in.
+     * By default it is "saves" in the working directory.
+     *
+     * @param directory The directory.
+     */
+    public void setSaveDirectory(Path directory)
+    {
+        this.saveDirectory = directory;
+    }
+
+    /**
+     * Tell the session that its commands are being replayed from a journal.
+     * A replayed 'save' does not write the saved game again, because the
+     * file may since hold a newer save.
+     *
+     * @param replaying Whether the commands are replayed.
+     */
+    public void setReplaying(boolean replaying)
+    {
+        this.replaying = replaying;
+    }
+
+    /**
+     * Save the state of the session. Only what differs from the world is
+     * saved: the player's room and undo journal, the items that have
+     * moved, the characters that have changed and the rooms of the
+     * wandering characters. A typical session takes a few hundred bytes.
+     *
+     * @return The saved game.
+     */
+    public byte[] save()
+    {
+        SaveStream out = new SaveStream();
+        out.writeInt(SAVE_MAGIC);
+        out.writeNumber(SAVE_VERSION);
+        out.writeNumber(world.getRoomCount());
+        out.writeNumber(world.getItemCount());
+        out.writeNumber(world.getCharacterCount());
+
+        out.writeNumber(currentRoom.getId());
+        // The undo journal from the oldest action on
+        out.writeNumber(journal.size());
+        for (int i = 0; i < journal.size(); i++) {
+            out.writeNumber(journal.getAction(i));
+            out.writeNumber(journal.getSubject(i));
+            out.writeNumber(journal.getDetail(i));
+        }
+
+        // The inventory in the order the items were picked up
+        out.writeNumber(player.getInventory().size());
+        for (Item item : player.getInventory()) {
+            out.writeNumber(item.getId());
+        }
+
+        // The other items that have left their rooms: first those in no
+        // room, then room by room in the order they arrived
+        ItemPlacements placements = rooms.getItemPlacements();
+        int[] moved = placements.getMovedItems();
+        int[] lost = new int[moved.length];
+        int lostCount = 0;
+        int[] arrivalRooms = new int[moved.length];
+        int roomCount = 0;
+        for (int item : moved) {
+            int room = placements.getRoom(item);
+            if (room != ItemPlacements.NOWHERE) {
+                arrivalRooms[roomCount++] = room;
+            }
+            else {
+                Item held = player.getItem(world.getItem(item).getName());
+                if (held == null || held.getId() != item) {
+                    lost[lostCount++] = item;
+                }
+            }
+        }
+        out.writeNumber(lostCount);
+        for (int i = 0; i < lostCount; i++) {
+            out.writeNumber(lost[i]);
+        }
+        Arrays.sort(arrivalRooms, 0, roomCount);
+        int distinct = 0;
+        for (int i = 0; i < roomCount; i++) {
+            if (i == 0 || arrivalRooms[i] != arrivalRooms[i - 1]) {
+                arrivalRooms[distinct++] = arrivalRooms[i];
+            }
+        }
+        out.writeNumber(distinct);
+        for (int i = 0; i < distinct; i++) {
+            out.writeNumber(arrivalRooms[i]);
+            List<Item> arrived = placements.getArrivals(arrivalRooms[i]);
+            out.writeNumber(arrived.size());
+            for (Item item : arrived) {
+                out.writeNumber(item.getId());
+            }
+        }
+
+        // The characters whose description or dialogue has changed
+        int changed = 0;
+        boolean[] differs = new boolean[characters.length];
+        for (int c = 0; c < characters.length; c++) {
+            Character original = world.createCharacter(c);
+            differs[c] = !characters[c].getDescription().equals(original.getDescription())
+                || !characters[c].getDialogue().equals(original.getDialogue());
+            if (differs[c]) {
+                changed++;
+            }
+        }
+        out.writeNumber(changed);
+        for (int c = 0; c < characters.length; c++) {
+            if (differs[c]) {
+                out.writeNumber(c);
+                out.writeString(characters[c].getDescription());
+                out.writeString(characters[c].getDialogue());
+            }
+        }
+
+        out.writeNumber(wanderers.size());
+        for (int i = 0; i < wanderers.size(); i++) {
+            out.writeNumber(wanderers.getPosition(i) + 1);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Load a game saved by save() on the same world. The session is set up
+     * again from the world and the saved differences are applied to it.
+     * If the saved game cannot be read, the session is left as it was.
+     *
+     * @param saved The saved game.
+     * @throws IOException If the bytes are not a saved game of this world.
+     */
+    public void load(byte[] saved) throws IOException
+    {
+        SaveStream in = new SaveStream(saved);
+        if (saved.length < 4 || in.readInt() != SAVE_MAGIC) {
+            throw new IOException("Not a saved game");
+        }
+        int version = in.readNumber();
+        if (version < 1 || version > SAVE_VERSION) {
+            throw new IOException("Unsupported saved game version " + version);
+        }
+        int roomCount = world.getRoomCount();
+        int itemCount = world.getItemCount();
+        if (in.readNumber() != roomCount || in.readNumber() != itemCount
+                || in.readNumber() != world.getCharacterCount()) {
+            throw new IOException("The game was saved on another world");
+        }
+
+        int current = in.readNumber(roomCount);
+        // Version 1 kept only the rooms left behind
+        int[][] history = new int[in.readNumber(saved.length)][];
+        for (int i = 0; i < history.length; i++) {
+            int action = version == 1 ? UndoJournal.MOVE : in.readNumber(4);
+            if (action == UndoJournal.MOVE) {
+                history[i] = new int[] {action, in.readNumber(roomCount), version == 1 ? 0 : in.readNumber(1)};
+            }
+            else {
+                int item = in.readNumber(itemCount);
+                history[i] = new int[] {action, item, in.readNumber(action == UndoJournal.GIVE ? 2 : roomCount)};
+            }
+        }
+        int[] inventory = new int[in.readNumber(saved.length)];
+        for (int i = 0; i < inventory.length; i++) {
+            inventory[i] = in.readNumber(itemCount);
+        }
+        int[] lost = new int[in.readNumber(saved.length)];
+        for (int i = 0; i < lost.length; i++) {
+            lost[i] = in.readNumber(itemCount);
+        }
+        int[][] arrivals = new int[in.readNumber(saved.length)][];
+        for (int r = 0; r < arrivals.length; r++) {
+            int room = in.readNumber(roomCount);
+            arrivals[r] = new int[in.readNumber(saved.length) + 1];
+            arrivals[r][0] = room;
+            for (int i = 1; i < arrivals[r].length; i++) {
+                arrivals[r][i] = in.readNumber(itemCount);
+            }
+        }
+        int[] changed = new int[in.readNumber(characters.length + 1)];
+        String[] descriptions = new String[changed.length];
+        String[] dialogues = new String[changed.length];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = in.readNumber(characters.length);
+            descriptions[i] = in.readString();
+            dialogues[i] = in.readString();
+        }
+        int[] positions = new int[in.readNumber(characters.length + 1)];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = in.readNumber(roomCount + 1) - 1;
+        }
+        if (!in.atEnd()) {
+            throw new IOException("Unexpected bytes after the saved game");
+        }
+        int wandering = 0;
+        for (int c = 0; c < characters.length; c++) {
+            if (world.getCharacterRoom(c) < 0) {
+                wandering++;
+            }
+        }
+        if (positions.length != wandering) {
+            throw new IOException("The game was saved on another world");
+        }
+
+        // Set the session up again from the world
+        CharacterScheduler previous = wanderers;
+        templeGuardian = null;
+        stranger = null;
+        createRooms();
+        initializeCharacters();
+        wanderers.continueFrom(previous);
+        gameOver = false;
+        won = false;
+
+        // Apply the differences
+        ItemPlacements placements = rooms.getItemPlacements();
+        for (int id : inventory) {
+            Item item = world.getItem(id);
+            placements.moveTo(item, ItemPlacements.NOWHERE);
+            player.addItem(item);
+        }
+        for (int id : lost) {
+            placements.moveTo(world.getItem(id), ItemPlacements.NOWHERE);
+        }
+        for (int[] room : arrivals) {
+            for (int i = 1; i < room.length; i++) {
+                placements.moveTo(world.getItem(room[i]), room[0]);
+            }
+        }
+        for (int i = 0; i < changed.length; i++) {
+            characters[changed[i]].updateDialogueAndDescription(dialogues[i], descriptions[i]);
+        }
+        for (int i = 0; i < positions.length; i++) {
+            wanderers.setPosition(i, positions[i]);
+        }
+        journal = new UndoJournal(UNDO_CAPACITY);
+        for (int[] action : history) {
+            journal.push(action[0], action[1], action[2]);
+        }
+        enterRoom(rooms.get(current));
+    }
+
+    /**
+     * @return true if the game is over.
+     */
+    public boolean isGameOver()
+    {
+        return gameOver;
+    }
+
+    /**
+     * @return true if the player has won the game.
+     */
+    public boolean hasWon()
+    {
+        return won;
+    }
+
+    /**
+     * Seed the game's random events, so that a session can be replayed
+     * with exactly the same outcome.
+     *
+     * @param seed The seed.
+     */
+    public void setRandomSeed(long seed)
+    {
+        wanderers.setSeed(seed);
+    }
+
+    /**
+     * @return The room the player is currently in.
+     */
+    public Room getCurrentRoom()
+    {
+        return currentRoom;
+    }
+
+    /**
+     * @return The player of this session.
+     */
+    public Player getPlayer()
+    {
+        return player;
+    }
+
+    /**
+     * @return The player's progress towards the goal of the world. It may
+     * be read from any thread while the session plays.
+     */
+    public QuestProgress getProgress()
+    {
+        return progress;
+    }
+
+    /**
+     * @return Who is in which room of this session. It may be read from
+     * any thread while the session plays.
+     */
+    public RoomOccupancy getOccupancy()
+    {
+        return occupancy;
+    }
+
+    /**
+     * @return The scheduler that moves this session's wandering characters.
+     */
+    public CharacterScheduler getWanderers()
+    {
+        return wanderers;
+    }
+
+    /**
+     * Find the quickest way to win from where the session stands now.
+     *
+     * @return The tour, or why the game can no longer be won.
+     */
+    public TourSolver.Tour getTour()
+    {
+        return new TourSolver(world, currentRoom.getId(), rooms.getItemPlacements(), player).solve();
+    }
+
+    /**
+     * @return The stranger who wanders this session's world.
+     */
+    public Character getStranger()
+    {
+        return stranger;
+    }
+
+    /**
+     * Append a line of text to the turn output.
+     *
+     * @param text The text to append.
+     */
+    private void println(String text)
+    {
+        output.append(text).append('\n');
+    }
+
+    /**
+     * Append text to the turn output without ending the line.
+     *
+     * @param text The text to append.
+     */
+    private void print(String text)
+    {
+        output.append(text);
+    }
+
+    /**
+     * Print out the opening message for the player.
+     */
+    private void printWelcome()
+    {
+        // Print game introduction and command
+
+        println("");
+        println("Welcome to Jewel Hunt!");
+        println("=========================================================================");
+        println("Each enchanted location has a unique jewel.");
+        println("=========================================================================");
+        println("Collect all eight jewels and return them to the Temple of Jewels to win");
+        println("=========================================================================");
+        println("Move with 'go' [direction]");
+        println("Collect items with 'take' [item]");
+        println("Drop items with 'drop' [item]");
+        println("Use command word 'give' if you want to give any character an item");
+        println("Check your items with 'inventory'. ");
+        println("Go back to the previous room using 'back'.");
+        println("Type 'help' if you need help.");
+        println("=========================================================================");
+        println("Good luck!");
+        println("=========================================================================");
+        printLocationInfo();
+
+    }
+
+    /**
+     * Given a command, process (that is: execute) the command by looking
+     * up its handler.
+     * @param command The command to be processed.
+     */
+    private void processCommand(Command command)
+    {
+        CommandHandler handler = handlers[command.getCommandWord().ordinal()];
+        if(handler == null) {
+            println("\nI don't know what that means\n");
+            return;
+        }
+        handler.execute(command);
+    }
+
+    // implementations of user commands:
+
+    /**
+     * Print out some help information.
+     * Here we print some stupid, cryptic message and a list of the
+     * command words.
+     */
+    private void printHelp()
+    {
+        output.append(HELP_TEXT);
+        printLocationInfo();
+    }
+
+    /**
+     * Prints out the long description of the current room and exits
+     */
+    private void printLocationInfo() {
+        output.append(currentRoom.getRender());
+    }
+
+    /**
+     * Moves the player in a specified direction.
+     * If there is not an exit, an error message is shown
+     *
+     * @param command The command containing the direction to move to
+     */
+    private void goRoom(Command command) {
+        if (!command.hasSecondWord()) {
+            println("\nGo where?\n");
+            return;
+        }
+
+        Direction direction = Direction.fromString(command.getSecondWord());
+        int nextRoom = direction == null ? -1 : currentRoom.getExit(direction);
+
+        if (nextRoom < 0) {
+            println("\nGo where?\n");
+        } else {
+            journal.push(UndoJournal.MOVE, currentRoom.getId(), 0);
+            enterRoom(rooms.get(nextRoom));
+            arrive();
+        }
+    }
+
+    /**
+     * Saves the game under the name given by the command in the save
+     * directory.
+     *
+     * @param command The 'save' command
+     */
+    private void saveGame(Command command) {
+        String name = getSaveName(command, "\nSave as what?\n");
+        if (name == null) {
+            return;
+        }
+
+        byte[] saved = save();
+        if (replaying) {
+            println("\nGame saved as " + name + " (" + saved.length + " bytes).\n");
+            return;
+        }
+        try {
+            Files.createDirectories(saveDirectory);
+            Files.write(saveDirectory.resolve(name + ".save"), saved);
+            println("\nGame saved as " + name + " (" + saved.length + " bytes).\n");
+        } catch (IOException e) {
+            println("\nThe game could not be saved: " + e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * Loads the game saved under the name given by the command.
+     *
+     * @param command The 'load' command
+     */
+    private void loadGame(Command command) {
+        String name = getSaveName(command, "\nLoad what?\n");
+        if (name == null) {
+            return;
+        }
+
+        try {
+            load(Files.readAllBytes(saveDirectory.resolve(name + ".save")));
+            println("\nGame " + name + " loaded.");
+            printLocationInfo();
+            println("");
+        } catch (NoSuchFileException e) {
+            println("\nThere is no saved game called " + name + ".\n");
+        } catch (IOException e) {
+            println("\nThat saved game cannot be loaded: " + e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * Returns the name of a saved game given as the second word of a
+     * command. Names may only contain letters, digits, '-' and '_', so a
+     * saved game always stays in the save directory.
+     *
+     * @param command The 'save' or 'load' command
+     * @param question What to print if there is no name
+     * @return The name, or null if it is missing or not allowed
+     */
+    private String getSaveName(Command command, String question) {
+        if (!command.hasSecondWord()) {
+            println(question);
+            return null;
+        }
+        String name = command.getSecondWord();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                println("\nA saved game name may only contain letters, digits, '-' and '_'.\n");
+                return null;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Moves the player along the shortest way to a room, named by the rest
+     * of the command. The whole way is one entry in the undo journal, so
+     * 'back' or 'undo' returns to where the player set out from. A player
+     * who carries every jewel stops at the temple if the way passes it.
+     *
+     * @param command The command containing the name of the room to travel to
+     */
+    private void travel(Command command) {
+        if (!command.hasSecondWord()) {
+            println("\nTravel where?\n");
+            return;
+        }
+
+        StringBuilder name = new StringBuilder(command.getSecondWord());
+        for (int i = 2; i < command.getWordCount(); i++) {
+            name.append(' ').append(command.getWord(i));
+        }
+
+        Routes routes = world.getRoutes();
+        int destination = routes.findRoom(name);
+        if (destination < 0) {
+            println("\nThere is no place called " + name + ".\n");
+            return;
+        }
+        if (destination == currentRoom.getId()) {
+            println("\nYou are already there.\n");
+            return;
+        }
+
+        Routes.Tree route = routes.getRoutesTo(destination);
+        if (!route.canReach(currentRoom.getId())) {
+            println("\nYou don't know the way to " + world.getRoomName(destination) + ".\n");
+            return;
+        }
+
+        journal.push(UndoJournal.MOVE, currentRoom.getId(), 0);
+        int steps = 0;
+        for (int next = route.getNextRoom(currentRoom.getId()); next >= 0; next = route.getNextRoom(next)) {
+            currentRoom = rooms.get(next);
+            steps++;
+            if (currentRoom == goalRoom && progress.isComplete(0)) {
+                break;
+            }
+        }
+        occupancy.enter(player, currentRoom.getId());
+        println("\nYou travel " + steps + (steps == 1 ? " room" : " rooms") + " to the " + currentRoom.getName() + ".");
+        arrive();
+    }
+
+    /**
+     * Shows the room the player has just entered and checks for the win
+     * and for a character in the room.
+     */
+    private void arrive() {
+        printLocationInfo(); // Show the player's current location
+        println("");
+
+        // Check for win condition
+        if (statistics == null) {
+            checkForWin(currentRoom);
+        }
+        else {
+            long start = System.nanoTime();
+            checkForWin(currentRoom);
+            statistics.recordWinCheck(System.nanoTime() - start);
+        }
+
+        if (gameOver)
+            return;
+
+        // Announce the characters in the room
+        for (Occupant occupant : currentRoom.getOccupants()) {
+            if (occupant instanceof Character) {
+                Character character = (Character) occupant;
+                print("\nThere's someone here: ");
+                println(character.getDescription());
+                println(character.getDialogue());
+            }
+        }
+    }
+
+    /**
+     * Moves the player into a room.
+     *
+     * @param room The room the player enters
+     */
+    private void enterRoom(Room room) {
+        currentRoom = room;
+        occupancy.enter(player, room.getId());
+    }
+
+    /**
+     * Process the 'quit' command to end the game.
+     *
+     * @param command The 'quit' command
+     */
+    private void quit(Command command)
+    {
+        if(command.hasSecondWord()) {
+            println("\nQuit what?\n");
+        }
+        else {
+            println("\nYou have quit Jewel Hunt.");
+            gameOver = true;
+        }
+    }
+
+    /**
+     * Processes the 'take' command to pick up an item from the current room and add it to the inventory
+     *
+     * @param command The 'take' command
+     */
+    private void takeItem(Command command) {
+        if (!command.hasSecondWord()) {
+            println("\nTake what?\n");
+            return;
+        }
+
+        String itemName = command.getSecondWord().toLowerCase();
+        Item item = currentRoom.getItem(itemName);
+
+        // Check if item exists in the room
+        if (item == null) {
+            println("\nThat item is not in this room.\n");
+            return;
+        }
+
+        // Check if item is pickable
+        if (!item.isPickable()) {
+            println("\nYou cannot pick up " + item.getName() + ".\n");
+            return;
+        }
+
+        // Add the item to the player's inventory
+        if (player.hasItem(item.getName())) {
+            println("\nYou already have " + item.getName() + " in your inventory.\n");
+            println("");
+        }
+        else if (!player.canCarry(item)) {
+            println("\nYou can't carry that much weight!\n");
+            println("");
+        }
+        else if (player.addItem(item)) {
+            println("\nYou picked up: " + item.getName() + ".\n");
+            currentRoom.removeItem(itemName); // Remove the item from the room if added successfully
+            journal.push(UndoJournal.TAKE, item.getId(), currentRoom.getId());
+        }
+    }
+
+    /**
+     * Processes the 'drop' command to drop an item from the player's inventory
+     *
+     * @param comman The 'drop' command
+     */
+    private void dropItem(Command command) {
+        if (!command.hasSecondWord()) {
+            println("\nDrop what?\n");
+            return;
+        }
+
+        String itemName = command.getSecondWord();
+        Item item = player.getItem(itemName);
+
+        if (item == null) {
+            println("\nYou don't have that item.\n");
+            return;
+        }
+
+        player.removeItem(itemName);
+        currentRoom.addItem(item);
+        journal.push(UndoJournal.DROP, item.getId(), currentRoom.getId());
+        println("\nYou dropped: " + item.getName()+ ".\n");
+    }
+
+    /**
+     * Displays the player's inventory
+     */
+    private void showInventory() {
+        print(player.getInventoryDescription());
+    }
+
+    /**
+     * Suggests the next command on the quickest way to win and says how
+     * many moves that way takes
+     */
+    private void hint() {
+        TourSolver.Tour tour = getTour();
+        if (!tour.isSolvable()) {
+            println("\nThe jewels can no longer be brought together: " + tour.getProblem() + ".\n");
+            return;
+        }
+        println("\nTry '" + tour.getFirstCommand() + "'. You can win in " + tour.getMoves()
+            + (tour.getMoves() == 1 ? " move.\n" : " moves.\n"));
+    }
+
+    /**
+     * Displays how long the turns take, in every session that shares
+     * this session's statistics
+     */
+    private void showStatistics() {
+        if (statistics == null) {
+            println("\nNo statistics are kept for this game.\n");
+            return;
+        }
+        println("\nTurn times in microseconds:");
+        println(statistics.getReport());
+    }
+
+    /**
+     * Displays how many of the required jewels the player carries and
+     * which are still missing
+     */
+    private void showStatus() {
+        println("\nJewels collected: " + progress.getHeld(0) + " of " + progress.getRequired(0) + ".");
+        if (progress.isComplete(0)) {
+            println("Bring them to the " + goalRoom.getName() + " to win!\n");
+        } else {
+            println("Missing jewels: " + player.getMissingJewels() + "\n");
+        }
+    }
+
+    /**
+     * Checks if the player has won the game if all jewels are brought to the temple of Jewels
+     * The game ends if all jewels are collected
+     *
+     * @param currentRoom The room the player is currently in
+     */
+    private void checkForWin(Room currentRoom)
+    {
+        // Check if the player is in the goal room
+        if (currentRoom == goalRoom) {
+
+            if (templeGuardian != null) {
+                println("\nThere's someone here: " + templeGuardian.getDescription());
+                println(templeGuardian.getDialogue());
+            }
+
+            // Check if the player has all the required jewels
+            if (progress.isComplete(0)) {
+                println("");
+                println("Congratulations! You have collected all the jewels and brought them to the Temple. You have won the game!\n");
+                gameOver = true;
+                won = true;
+            } else {
+                println("The Guardian says: 'You do not have all the jewels yet. Keep looking!'");
+                println("\nMissing jewels: " + player.getMissingJewels());
+            }
+        }
+    }
+
+    /**
+     * Processes the 'back' command to allow the player to go to the previous room
+     */
+    private void back()
+    {
+        int previous = journal.removeLatest(UndoJournal.MOVE);
+        if (previous >= 0) {
+            enterRoom(rooms.get(previous));
+            println("\nYou have returned to: " + currentRoom.getName());
+            printLocationInfo();
+        } else {
+            println("\nYou are back at the starting location.\n");
+        }
+    }
+
+    /**
+     * Processes the 'undo' command, which takes back the latest move, take,
+     * drop or give, or as many of them as the second word says
+     *
+     * @param command The 'undo' command
+     */
+    private void undo(Command command)
+    {
+        int count = 1;
+        if (command.hasSecondWord()) {
+            try {
+                count = Integer.parseInt(command.getSecondWord());
+            } catch (NumberFormatException e) {
+                count = 0;
+            }
+            if (count < 1) {
+                println("\nUndo how many?\n");
+                return;
+            }
+        }
+        if (journal.isEmpty()) {
+            println("\nThere is nothing to undo.\n");
+            return;
+        }
+
+        Room start = currentRoom;
+        println("");
+        int undone = 0;
+        while (undone < count && !journal.isEmpty()) {
+            int latest = journal.size() - 1;
+            int subject = journal.getSubject(latest);
+            int detail = journal.getDetail(latest);
+            switch (journal.getAction(latest)) {
+                case UndoJournal.MOVE:
+                    enterRoom(rooms.get(subject));
+                    println("You go back to the " + currentRoom.getName() + ".");
+                    break;
+                case UndoJournal.TAKE:
+                    Item taken = world.getItem(subject);
+                    player.removeItem(taken.getName());
+                    rooms.get(detail).addItem(taken);
+                    println("You put the " + taken.getName() + " back.");
+                    break;
+                case UndoJournal.DROP:
+                    Item dropped = world.getItem(subject);
+                    rooms.get(detail).removeItem(dropped);
+                    player.addItem(dropped);
+                    println("You pick up the " + dropped.getName() + " again.");
+                    break;
+                case UndoJournal.GIVE:
+                    Item given = world.getItem(subject);
+                    player.addItem(given);
+                    if (detail == 1 && stranger != null) {
+                        Character original = world.createCharacter(indexOf(stranger));
+                        stranger.updateDialogueAndDescription(original.getDialogue(), original.getDescription());
+                    }
+                    println("The Stranger gives the " + given.getName() + " back.");
+                    break;
+            }
+            journal.pop();
+            undone++;
+        }
+        if (undone < count) {
+            println("There is nothing more to undo.");
+        }
+        if (currentRoom != start) {
+            printLocationInfo();
+        }
+        else {
+            println("");
+        }
+    }
+
+    /**
+     * @return The number of a character of the game, in the order of the world.
+     */
+    private int indexOf(Character character)
+    {
+        for (int c = 0; c < characters.length; c++) {
+            if (characters[c] == character) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Processes the 'give' command which allows the player to give an item to the Stranger
+     * The item is removed form the player's inventory
+     *
+     * @param command The 'give' command
+     */
+    private void giveItemToStranger(Command command)
+    {
+        // Ensures there are both a second and third word
+        if (!command.hasSecondWord() || !command.hasThirdWord()) {
+            println("\nGive what to whom?\n");
+            return;
+        }
+
+        String itemName = command.getSecondWord();
+        String characterName = command.getThirdWord();
+
+
+        Item item = player.getItem(itemName);
+        // Check if the item exists in the player's inventory
+        if (item == null) {
+            println("\nYou don't have that item to give.\n");
+            return;
+        }
+
+        // Ensure the character the item is given to is the stranger
+        if (stranger == null || !characterName.equalsIgnoreCase(stranger.getName())) {
+            println("\nYou can only give items to the Stranger.\n");
+            return;
+        }
+
+
+        player.removeItem(itemName);  // Remove the item from the player's inventory
+
+        println("\nYou gave your " + itemName + " to the Stranger.");
+        println("The Stranger says: 'Thank you for the " + itemName + "!'\n");
+
+        // Update the Strangers dialogue and description
+        String content = "The Stranger is content and happily eating the fruit you gave them.";
+        boolean changed = !stranger.getDescription().equals(content) || !stranger.getDialogue().isEmpty();
+        stranger.updateDialogueAndDescription("", content);
+        journal.push(UndoJournal.GIVE, item.getId(), changed ? 1 : 0);
+        println("The Stranger is eating gratefully and will not bother you again.");
+    }
+}
@@ -0,0 +1,629 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A line-based TCP server for "Jewel Hunt".
+ *
+ * Every connected player gets an isolated GameEngine and is served by its own
+ * virtual thread, so tens of thousands of idle sessions only cost their game
+ * state and a parked thread. The number of sessions is capped, sessions that
+ * send nothing for too long are closed, and on shutdown the server stops
+ * accepting new players and lets running sessions finish their current turn.
+ *
+ * All sessions time their turns in one TurnStatistics, which players see
+ * with the 'stats' command and which is registered with the platform MBean
+ * server as "JewelHunt:type=TurnStatistics,port=<port>".
+ *
+ * Every game has a number and its commands are written to a CommandJournal
+ * before they are executed. A player who loses the connection can connect
+ * again and send 'resume <number>' until the idle timeout passes. When the
+ * server starts, it rebuilds the games that were not over from the journal,
+ * so after a crash or a shutdown the players resume their games the same way.
+ * A game is snapshot right after every 'load', so that rebuilding it never
+ * depends on what a saved game file holds by then.
+ *
+ * The games saved with 'save' are kept in a directory of their own for
+ * every game, named by the game's number under "saves", so one player can
+ * neither load nor overwrite the saved games of another.
+ *
+ * Run with: java GameServer [port] [maxSessions] [idleTimeoutSeconds] [worldFile] [journalDirectory]
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class GameServer
+{
+    private static final int DEFAULT_PORT = 4000;               // Port used when none is given
+    private static final int DEFAULT_MAX_SESSIONS = 10000;      // Session cap used when none is given
+    private static final int DEFAULT_IDLE_TIMEOUT = 300;        // Idle timeout in seconds used when none is given
+    private static final int DRAIN_TIMEOUT = 30;                // Seconds to wait for sessions on shutdown
+    private static final String SAVE_DIRECTORY = "saves";       // Holds a directory of saved games for each game
+
+    private int port;                                           // The port to listen on
+    private int maxSessions;                                    // The maximum number of concurrent sessions
+    private int idleTimeoutMillis;                              // How long a session may stay silent
+    private World world;                                        // The world every session plays
+    private Parser parser;                                      // Shared parser, parsing is stateless
+    private Semaphore sessionPermits;                           // One permit per allowed session
+    private Set<Session> sessions;                              // The sessions currently connected
+    private ExecutorService executor;                           // Runs one virtual thread per session
+    private ServerSocket serverSocket;                          // Accepts new connections
+    private volatile boolean running;                           // Whether new connections are accepted
+    private TurnStatistics statistics;                          // The times of every session's turns
+    private ObjectName statisticsName;                          // The name of the statistics MBean, once registered
+    private CommandJournal journal;                             // Where the commands of every game are journalled, or null
+    private Map<Long, WaitingGame> waiting;                     // Games without a connection, by number, until they expire
+    private SecureRandom gameNumbers;                           // Draws the numbers of new games
+
+    /**
+     * Start a server from the command line and drain it when the JVM exits.
+     *
+     * @param args Optional port, session cap, idle timeout in seconds, world file
+     *             and journal directory ("journal" by default).
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+        int idleTimeout = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_IDLE_TIMEOUT;
+        World world = args.length > 3 ? World.open(Paths.get(args[3])) : World.stock();
+        Path journalDirectory = Paths.get(args.length > 4 ? args[4] : "journal");
+
+        GameServer server = new GameServer(world, port, maxSessions, idleTimeout, journalDirectory);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
+        server.start();
+        if (server.getWaitingGameCount() > 0) {
+            System.out.println("Recovered " + server.getWaitingGameCount() + " unfinished games from the journal");
+        }
+        System.out.println("Jewel Hunt server listening on port " + port);
+        server.acceptConnections();
+    }
+
+    /**
+     * Create a server that does not journal its games.
+     *
+     * @param world The world every session plays.
+     * @param port The port to listen on.
+     * @param maxSessions The maximum number of concurrent sessions.
+     * @param idleTimeoutSeconds How long a session may stay silent before it is closed.
+     */
+    public GameServer(World world, int port, int maxSessions, int idleTimeoutSeconds)
+    {
+        this(world, port, maxSessions, idleTimeoutSeconds, null);
+    }
+
+    /**
+     * Create a server.
+     *
+     * @param world The world every session plays.
+     * @param port The port to listen on.
+     * @param maxSessions The maximum number of concurrent sessions.
+     * @param idleTimeoutSeconds How long a session may stay silent before it is closed.
+     * @param journalDirectory Where the commands of the games are journalled, or null for nowhere.
+     */
+    public GameServer(World world, int port, int maxSessions, int idleTimeoutSeconds, Path journalDirectory)
+    {
+        this.world = world;
+        this.port = port;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutSeconds * 1000;
+        this.statistics = new TurnStatistics();
+        this.parser = new Parser();
+        this.parser.setStatistics(statistics);
+        this.sessionPermits = new Semaphore(maxSessions);
+        this.sessions = ConcurrentHashMap.newKeySet();
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.journal = journalDirectory == null ? null : new CommandJournal(journalDirectory, world);
+        this.waiting = new ConcurrentHashMap<>();
+        this.gameNumbers = new SecureRandom();
+    }
+
+    /**
+     * Rebuild the unfinished games in the journal and bind the server
+     * socket. Connections are served once acceptConnections() runs.
+     */
+    public void start() throws IOException
+    {
+        if (journal != null) {
+            recoverGames();
+        }
+        serverSocket = new ServerSocket(port, 1024);
+        running = true;
+        try {
+            ObjectName name = new ObjectName("JewelHunt:type=TurnStatistics,port=" + port);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, name);
+            statisticsName = name;
+        }
+        catch (JMException e) {
+            System.err.println("Turn statistics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the games the journal holds that were not over, snapshot them
+     * into new segments and compact the journal. The games wait for their
+     * players to resume them. A replayed 'save' does not write its file again.
+     */
+    private void recoverGames() throws IOException
+    {
+        List<CommandJournal.Recovered> games = journal.recover();
+        journal.start();
+        Parser replayParser = new Parser();
+        for (CommandJournal.Recovered recovered : games) {
+            GameEngine engine = new GameEngine(world);
+            engine.setOutput(turn -> { });
+            engine.setSaveDirectory(getSaveDirectory(recovered.getGame()));
+            try {
+                if (recovered.getSnapshot() == null) {
+                    engine.setRandomSeed(recovered.getSeed());
+                    engine.start();
+                }
+                else {
+                    engine.load(recovered.getSnapshot());
+                    engine.setRandomSeed(recovered.getSeed());
+                }
+            }
+            catch (IOException e) {
+                System.err.println("Game " + Long.toHexString(recovered.getGame()) + " cannot be rebuilt: " + e.getMessage());
+                continue;
+            }
+
+            Command command = new Command();
+            TurnResult result = TurnResult.CONTINUE;
+            engine.setReplaying(true);
+            for (String line : recovered.getCommands()) {
+                result = engine.step(replayParser.parse(line, command));
+                if (result.isGameOver()) {
+                    break;
+                }
+            }
+            engine.setReplaying(false);
+            if (!result.isGameOver()) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                engine.setRandomSeed(seed);
+                journal.logSnapshot(recovered.getGame(), seed, engine.save());
+                keepWaiting(recovered.getGame(), engine);
+            }
+        }
+        journal.compact();
+    }
+
+    /**
+     * @param game The number of a game.
+     * @return The directory the game keeps its saved games in.
+     */
+    private static Path getSaveDirectory(long game)
+    {
+        return Paths.get(SAVE_DIRECTORY, Long.toHexString(game));
+    }
+
+    /**
+     * Keep a game whose player has gone until it is resumed or the idle
+     * timeout passes, when it ends. Every wait is a new WaitingGame, so the
+     * timer of an earlier wait of the same game can never end it.
+     *
+     * @param game The number of the game.
+     * @param engine The game.
+     */
+    private void keepWaiting(long game, GameEngine engine)
+    {
+        engine.setOutput(turn -> { });
+        WaitingGame wait = new WaitingGame(engine);
+        waiting.put(game, wait);
+        if (idleTimeoutMillis > 0) {
+            wait.timer = Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(idleTimeoutMillis);
+                }
+                catch (InterruptedException e) {
+                    return;     // The game was resumed
+                }
+                if (waiting.remove(game, wait)) {
+                    try {
+                        journal.logEnd(game);
+                    }
+                    catch (IOException e) {
+                        // The journal is closed; the game waits again after a restart
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Accept connections until the server is shut down. Each accepted
+     * connection is handed to its own virtual thread.
+     */
+    public void acceptConnections()
+    {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e) {
+                if (running) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                    continue;
+                }
+                return;     // The server socket was closed by shutdown()
+            }
+
+            if (!sessionPermits.tryAcquire()) {
+                reject(socket);
+                continue;
+            }
+            Session session = new Session(socket);
+            sessions.add(session);
+            executor.execute(session);
+        }
+    }
+
+    /**
+     * @return The number of sessions currently connected.
+     */
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * Count the connected sessions by how many of the required items their
+     * player carries, for a dashboard. Each session's count is kept up to
+     * date as it plays, so this costs one read per session.
+     *
+     * @return The number of sessions carrying 0, 1, 2 ... of the required items.
+     */
+    public int[] getProgressCounts()
+    {
+        int[] counts = new int[world.getWinCondition().size() + 1];
+        for (Session session : sessions) {
+            counts[session.engine.getProgress().getHeld(0)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * @return The times of the turns of every session.
+     */
+    public TurnStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * @return The number of games waiting for their players to resume them.
+     */
+    public int getWaitingGameCount()
+    {
+        return waiting.size();
+    }
+
+    /**
+     * @return The maximum number of concurrent sessions.
+     */
+    public int getMaxSessions()
+    {
+        return maxSessions;
+    }
+
+    /**
+     * Stop accepting connections and drain the running sessions. Each session
+     * finishes the turn it is processing and is then closed. Sessions still
+     * running after the drain timeout are closed forcibly.
+     */
+    public void shutdown()
+    {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            // Nothing left to do with the socket
+        }
+        if (statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            }
+            catch (JMException e) {
+                // The MBean is already gone
+            }
+        }
+
+        for (Session session : sessions) {
+            session.drain();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(DRAIN_TIMEOUT, TimeUnit.SECONDS)) {
+                for (Session session : sessions) {
+                    session.close();
+                }
+                executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Turn a connection away because the server is full.
+     *
+     * @param socket The rejected connection.
+     */
+    private void reject(Socket socket)
+    {
+        try (socket) {
+            socket.getOutputStream().write("The server is full, please try again later.\n".getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e) {
+            // The client has already gone
+        }
+    }
+
+    /**
+     * A game waiting for its player, with the timer that ends it.
+     */
+    private static class WaitingGame
+    {
+        private final GameEngine engine;        // The game
+        private volatile Thread timer;          // Ends the game after the idle timeout, or null
+
+        /**
+         * Create a wait for a game.
+         *
+         * @param engine The game.
+         */
+        WaitingGame(GameEngine engine)
+        {
+            this.engine = engine;
+        }
+
+        /**
+         * Stop the timer, once the game has been taken out of the waiting games.
+         */
+        void stopTimer()
+        {
+            Thread running = timer;
+            if (running != null) {
+                running.interrupt();
+            }
+        }
+    }
+
+    /**
+     * One connected player with an isolated game session.
+     */
+    private class Session implements Runnable
+    {
+        private final Socket socket;            // The player's connection
+        private GameEngine engine;              // The player's game
+        private long game;                      // The number of the player's game
+        private long seed;                      // The seed the game's random events started from
+        private boolean journalled;             // Whether the game is in the journal yet
+        private volatile boolean draining;      // Set when the server shuts down
+
+        /**
+         * Create a session for a new connection.
+         *
+         * @param socket The player's connection.
+         */
+        public Session(Socket socket)
+        {
+            this.socket = socket;
+            this.engine = new GameEngine(world);
+            engine.setStatistics(statistics);
+            game = gameNumbers.nextLong() >>> 1;
+            engine.setSaveDirectory(getSaveDirectory(game));
+            seed = ThreadLocalRandom.current().nextLong();
+            engine.setRandomSeed(seed);
+        }
+
+        /**
+         * Play the game over the connection until the player quits or wins,
+         * the connection goes idle or closes, or the server drains. Unless
+         * the game is over, it stays in the journal; a game whose connection
+         * was lost also waits in memory to be resumed.
+         */
+        public void run()
+        {
+            boolean over = false;
+            try (socket) {
+                socket.setSoTimeout(idleTimeoutMillis);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                engine.setOutput(new SocketOutput(socket));
+                engine.setPrompt("> ");
+
+                if (journal != null) {
+                    send("\nThis is game " + Long.toHexString(game) + ". If you lose the connection, connect again and type 'resume "
+                        + Long.toHexString(game) + "' to go on playing.\n");
+                }
+                Command command = new Command();
+                TurnResult result = engine.start();
+                while (!result.isGameOver() && !draining) {
+                    String line;
+                    try {
+                        line = in.readLine();
+                    }
+                    catch (SocketTimeoutException e) {
+                        send("\nYou have been idle for too long. Good bye!\n");
+                        over = true;
+                        return;
+                    }
+                    if (line == null) {
+                        break;
+                    }
+                    if (journal != null && !journalled && line.strip().regionMatches(true, 0, "resume ", 0, 7)) {
+                        resume(line.strip().substring(7).strip());
+                        continue;
+                    }
+                    journalCommand(line);
+                    result = engine.step(parser.parse(line, command));
+                    if (!result.isGameOver() && journal != null
+                            && (command.getCommandWord() == CommandWord.LOAD || journal.needsSnapshot(game))) {
+                        seed = ThreadLocalRandom.current().nextLong();
+                        engine.setRandomSeed(seed);
+                        journal.logSnapshot(game, seed, engine.save());
+                    }
+                }
+                over = result.isGameOver();
+                if (draining) {
+                    send("\nThe server is shutting down. Good bye!\n");
+                }
+            }
+            catch (IOException | UncheckedIOException e) {
+                // The connection was lost, the game waits to be resumed
+            }
+            finally {
+                sessions.remove(this);
+                sessionPermits.release();
+                leaveGame(over);
+            }
+        }
+
+        /**
+         * Take over a game that is waiting for its player, in place of the
+         * new game this session started with.
+         *
+         * @param number The number of the game, as the player typed it.
+         */
+        private void resume(String number) throws IOException
+        {
+            long id = -1;
+            try {
+                id = Long.parseUnsignedLong(number, 16);
+            }
+            catch (NumberFormatException e) {
+                // Not a game number, so no game waits under it
+            }
+            WaitingGame resumed = waiting.remove(id);
+            if (resumed == null) {
+                send("\nThere is no game " + number + " waiting to be resumed.\n\n> ");
+                return;
+            }
+            resumed.stopTimer();
+
+            game = id;
+            engine = resumed.engine;
+            journalled = true;
+            engine.setOutput(new SocketOutput(socket));
+            engine.setPrompt("> ");
+            engine.setStatistics(statistics);
+            send("\nWelcome back!\n");
+            socket.getOutputStream().write(engine.getCurrentRoom().getRender());
+            send("\n\n> ");
+        }
+
+        /**
+         * Journal a line before it is executed. The game itself is journalled
+         * with its first line, so that connections that send nothing cost
+         * the journal nothing.
+         *
+         * @param line The line the player sent.
+         */
+        private void journalCommand(String line) throws IOException
+        {
+            if (journal == null) {
+                return;
+            }
+            if (!journalled) {
+                journal.logStart(game, seed);
+                journalled = true;
+            }
+            journal.logCommand(game, line);
+        }
+
+        /**
+         * Record how the player left the game. A game that is over ends in
+         * the journal. A game whose connection was lost waits to be resumed.
+         * A game left because the server drains stays in the journal only,
+         * to be rebuilt when the server starts again.
+         *
+         * @param over Whether the game is over.
+         */
+        private void leaveGame(boolean over)
+        {
+            if (journal == null || !journalled) {
+                return;
+            }
+            if (over) {
+                try {
+                    journal.logEnd(game);
+                }
+                catch (IOException e) {
+                    // The game is rebuilt after a restart and ends when it is not resumed
+                }
+            }
+            else if (!draining) {
+                keepWaiting(game, engine);
+            }
+        }
+
+        /**
+         * Send a message from the server, outside of the game's turns.
+         *
+         * @param message The message to send.
+         */
+        private void send(String message) throws IOException
+        {
+            socket.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Ask the session to end after its current turn. A session waiting
+         * for input sees the end of its input and ends straight away.
+         */
+        public void drain()
+        {
+            draining = true;
+            try {
+                socket.shutdownInput();
+            }
+            catch (IOException e) {
+                // The connection is already closed
+            }
+        }
+
+        /**
+         * Close the session's connection immediately.
+         */
+        public void close()
+        {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // The connection is already closed
+            }
+        }
+    }
+}
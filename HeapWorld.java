@@ -0,0 +1,192 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A World held in ordinary arrays on the heap, as read from a world file
+ * by WorldLoader.
+ *
+ * The exits of all rooms are kept in three arrays: the exits of room r
+ * are the entries from exitStart[r] up to exitStart[r + 1], sorted by
+ * direction. Items are sorted by room in the same way, and indexed by
+ * room and name as described in ItemKey.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class HeapWorld extends World
+{
+    private String[] roomKeys;                  // The key of each room, as used in the world file
+    private String[] roomNames;                 // The name of each room
+    private String[] roomDescriptions;          // The description of each room
+    private Map<String, Integer> roomIndex;     // Room numbers by key
+    private int[] exitStart;                    // The first exit of each room, and one past the last
+    private byte[] exitDirections;              // The direction of each exit, by ordinal
+    private int[] exitTargets;                  // The room each exit leads to
+    private Item[] items;                       // All items, shared by every session
+    private int[] itemStart;                    // The first item of each room, and one past the last
+    private int[] itemRooms;                    // The room each item starts in
+    private int[] itemNext;                     // The next item of the same name in the same room, or -1
+    private int[] itemTable;                    // The first item of each name in each room, see ItemKey
+    private int[] itemGoalBits;                 // The bit of each item in the goal, or -1
+    private Character[] characters;             // Templates of all characters
+    private int[] characterRooms;               // The room of each character, -1 for wanderers
+    private int startRoom;                      // The room the player starts in
+    private int goalRoom;                       // The room the jewels must be brought to
+    private List<String> requiredItems;         // The items needed to win
+
+    /**
+     * Create a world. Worlds are created by WorldLoader.
+     */
+    HeapWorld(String[] roomKeys, String[] roomNames, String[] roomDescriptions, Map<String, Integer> roomIndex,
+              int[] exitStart, byte[] exitDirections, int[] exitTargets, Item[] items, int[] itemStart, int[] itemRooms,
+              Character[] characters, int[] characterRooms, int startRoom, int goalRoom, List<String> requiredItems)
+    {
+        this.roomKeys = roomKeys;
+        this.roomNames = roomNames;
+        this.roomDescriptions = roomDescriptions;
+        this.roomIndex = roomIndex;
+        this.exitStart = exitStart;
+        this.exitDirections = exitDirections;
+        this.exitTargets = exitTargets;
+        this.items = items;
+        this.itemStart = itemStart;
+        this.itemRooms = itemRooms;
+        this.characters = characters;
+        this.characterRooms = characterRooms;
+        this.startRoom = startRoom;
+        this.goalRoom = goalRoom;
+        this.requiredItems = Collections.unmodifiableList(requiredItems);
+        itemNext = ItemKey.buildChains(this);
+        itemTable = ItemKey.buildTable(this, itemNext);
+        itemGoalBits = WinCondition.buildItemBits(this);
+    }
+
+    public int getRoomCount()
+    {
+        return roomNames.length;
+    }
+
+    public String getRoomKey(int room)
+    {
+        return roomKeys[room];
+    }
+
+    public String getRoomName(int room)
+    {
+        return roomNames[room];
+    }
+
+    public String getRoomDescription(int room)
+    {
+        return roomDescriptions[room];
+    }
+
+    public int findRoom(String key)
+    {
+        Integer room = roomIndex.get(key);
+        return room == null ? -1 : room;
+    }
+
+    public int getExitCount()
+    {
+        return exitTargets.length;
+    }
+
+    public int getFirstExit(int room)
+    {
+        return exitStart[room];
+    }
+
+    public Direction getExitDirection(int exit)
+    {
+        return Direction.of(exitDirections[exit]);
+    }
+
+    public int getExitTarget(int exit)
+    {
+        return exitTargets[exit];
+    }
+
+    public int getExit(int room, Direction direction)
+    {
+        int ordinal = direction.ordinal();
+        for (int e = exitStart[room]; e < exitStart[room + 1]; e++) {
+            if (exitDirections[e] == ordinal) {
+                return exitTargets[e];
+            }
+        }
+        return -1;
+    }
+
+    public int getItemCount()
+    {
+        return items.length;
+    }
+
+    public int getFirstItem(int room)
+    {
+        return itemStart[room];
+    }
+
+    public Item getItem(int item)
+    {
+        return items[item];
+    }
+
+    public int getItemRoom(int item)
+    {
+        return itemRooms[item];
+    }
+
+    public int getItemGoalBit(int item)
+    {
+        return itemGoalBits[item];
+    }
+
+    public int getNextItemNamed(int item)
+    {
+        return itemNext[item];
+    }
+
+    int getItemTableSize()
+    {
+        return itemTable.length;
+    }
+
+    int getItemTableEntry(int slot)
+    {
+        return itemTable[slot];
+    }
+
+    public int getCharacterCount()
+    {
+        return characters.length;
+    }
+
+    public Character createCharacter(int character)
+    {
+        Character template = characters[character];
+        return new Character(template.getName(), template.getDescription(), template.getDialogue());
+    }
+
+    public int getCharacterRoom(int character)
+    {
+        return characterRooms[character];
+    }
+
+    public int getStartRoom()
+    {
+        return startRoom;
+    }
+
+    public int getGoalRoom()
+    {
+        return goalRoom;
+    }
+
+    public List<String> getRequiredItems()
+    {
+        return requiredItems;
+    }
+}
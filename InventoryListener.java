@@ -0,0 +1,22 @@
+/**
+ * Told whenever an item goes into or out of a player's inventory.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public interface InventoryListener
+{
+    /**
+     * An item was added to the inventory.
+     *
+     * @param item The item.
+     */
+    void itemAdded(Item item);
+
+    /**
+     * An item was removed from the inventory.
+     *
+     * @param item The item.
+     */
+    void itemRemoved(Item item);
+}
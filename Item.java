@@ -3,12 +3,16 @@
  * The Item class represents an obkect that exists in teh game's world
  * Items have properties such as name, description, weight and whetehr they can be picked up by the player.
  * 
+ * Items never change, so each item of a World is a single prototype shared
+ * by every session. Where an item is during a session is recorded by the
+ * session's ItemPlacements, keyed by the item's number in the world.
  *
  * @author Jawhara Jannah
  * @version 1.0
  */
 public class Item
 {
+    private int id;                 // The number of the item in its world, or -1
     private String name;            // The name of the item
     private String description;     // A description of the item
     private int weight;             // The weight of the item
@@ -24,12 +28,35 @@ public class Item
      */
     public Item(String name, String description, int weight, boolean isPickable)
     {
+        this(-1, name, description, weight, isPickable);
+    }
+
+    /**
+     * Constructor to initalize the properties of an item of a world
+     * 
+     * @param id The number of the item in its world.
+     * @param name The name of the item.
+     * @param description A  description of the item.
+     * @param weight The weight of the item.
+     * @param isPickable Whether the item can be picked up by the player.
+     */
+    public Item(int id, String name, String description, int weight, boolean isPickable)
+    {
+        this.id = id;
         this.name = name;
         this.description = description;
         this.weight = weight;
         this.isPickable = isPickable;
     }
 
+    /**
+     *  @return The number of the item in its world, or -1 if it belongs to no world.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
     /**
      *  @return The name of the item.
      */
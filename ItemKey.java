@@ -0,0 +1,155 @@
+import java.util.HashMap;
+
+/**
+ * The normalised key of an item name. Item names are matched ignoring
+ * case everywhere: in rooms, in the player's inventory and in world files.
+ *
+ * Two names have the same key exactly when String.equalsIgnoreCase says
+ * they are equal, and their hash is computed from the characters without
+ * making a lowercase copy.
+ *
+ * The items a world puts in its rooms are indexed by key once for the
+ * whole world: an open-addressing table finds the first item of a given
+ * name in a given room, and a chain links it to the other items of that
+ * name in the same room. HeapWorld and MappedWorld keep the table and the
+ * chain built here.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class ItemKey
+{
+    /**
+     * There are no item keys, only static methods.
+     */
+    private ItemKey()
+    {
+    }
+
+    /**
+     * @param name An item name.
+     * @return The key of the name: the name with every character folded to one case.
+     */
+    public static String of(CharSequence name)
+    {
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            key.append(fold(name.charAt(i)));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param name An item name.
+     * @return A hash of the name's key.
+     */
+    public static int hash(CharSequence name)
+    {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + fold(name.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * @param name An item name.
+     * @param other Another item name.
+     * @return true if the names have the same key.
+     */
+    public static boolean matches(CharSequence name, CharSequence other)
+    {
+        if (name.length() != other.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char a = name.charAt(i);
+            char b = other.charAt(i);
+            if (a != b && fold(a) != fold(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The character folded to one case, as equalsIgnoreCase compares it.
+     */
+    private static char fold(char c)
+    {
+        return java.lang.Character.toLowerCase(java.lang.Character.toUpperCase(c));
+    }
+
+    /**
+     * Return where to start looking for the items of a name in a room in
+     * a table built by buildTable().
+     *
+     * @param room The number of the room.
+     * @param name The item name.
+     * @param tableSize The size of the table, a power of two.
+     * @return The first slot to look in.
+     */
+    static int slot(int room, CharSequence name, int tableSize)
+    {
+        int hash = (hash(name) * 31 + room) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (tableSize - 1);
+    }
+
+    /**
+     * Chain together the items of the same name that a world puts in the
+     * same room.
+     *
+     * @param world The world.
+     * @return The next item of the same name in the same room for every item, or -1.
+     */
+    static int[] buildChains(World world)
+    {
+        int[] next = new int[world.getItemCount()];
+        for (int room = 0; room < world.getRoomCount(); room++) {
+            int first = world.getFirstItem(room);
+            int end = world.getFirstItem(room + 1);
+            HashMap<String, Integer> last = end - first > 1 ? new HashMap<>() : null;
+            for (int i = first; i < end; i++) {
+                next[i] = -1;
+                if (last != null) {
+                    Integer previous = last.put(of(world.getItem(i).getName()), i);
+                    if (previous != null) {
+                        next[previous] = i;
+                    }
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Build the table of the first item of each name in each room.
+     *
+     * @param world The world.
+     * @param next The chains built by buildChains().
+     * @return The table: item number + 1 in its slot, 0 in free slots.
+     */
+    static int[] buildTable(World world, int[] next)
+    {
+        int items = world.getItemCount();
+        int[] table = new int[Integer.highestOneBit(Math.max(2, items + items / 2) - 1) << 1];
+        boolean[] chained = new boolean[items];
+        for (int i = 0; i < items; i++) {
+            if (next[i] >= 0) {
+                chained[next[i]] = true;
+            }
+        }
+        for (int room = 0; room < world.getRoomCount(); room++) {
+            for (int i = world.getFirstItem(room); i < world.getFirstItem(room + 1); i++) {
+                if (!chained[i]) {
+                    int slot = slot(room, world.getItem(i).getName(), table.length);
+                    while (table[slot] != 0) {
+                        slot = (slot + 1) & (table.length - 1);
+                    }
+                    table[slot] = i + 1;
+                }
+            }
+        }
+        return table;
+    }
+}
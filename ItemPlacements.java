@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where the items of a World are during one game session.
+ *
+ * Every item starts in the room the world puts it in, and the placements
+ * only record the items that have moved since: out of their room into the
+ * player's inventory or away, or into another room. An item that has not
+ * moved costs nothing, so a session is as small on a world with a million
+ * items as on one with ten, until the player starts moving them.
+ *
+ * The record is kept in persistent maps, so fork() shares it with the
+ * placements it was made from in constant time, and each side only copies
+ * the few nodes that a move changes. The items moved into a room are kept
+ * in a persistent map of their own, by the ItemKey hash of their name and
+ * compared with ItemKey.matches(), so dropping an item into a
+ * room that already holds thousands of dropped items, or finding one of
+ * them by name, only touches the few items of the same name.
+ *
+ * @author Jawhara Jannah
+ * @version 2.0
+ */
+public class ItemPlacements
+{
+    public static final int NOWHERE = -1;       // The room of an item that is in no room
+
+    private World world;                                // The world the items belong to
+    private PersistentMap<Integer, Integer> moved;      // The room of every moved item, by item number
+    private PersistentMap<Integer, Arrivals> arrivals;  // The items moved into each room
+    private PersistentMap<Integer, Integer> departures; // The number of items of each room that have moved out
+
+    /**
+     * Create the placements of a new session, with every item where the
+     * world puts it.
+     *
+     * @param world The world.
+     */
+    public ItemPlacements(World world)
+    {
+        this(world, PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty());
+    }
+
+    /**
+     * Create placements from the maps of other placements.
+     */
+    private ItemPlacements(World world, PersistentMap<Integer, Integer> moved, PersistentMap<Integer, Arrivals> arrivals,
+                           PersistentMap<Integer, Integer> departures)
+    {
+        this.world = world;
+        this.moved = moved;
+        this.arrivals = arrivals;
+        this.departures = departures;
+    }
+
+    /**
+     * @return Placements that start as these placements and then change
+     * independently of them. This takes constant time.
+     */
+    public ItemPlacements fork()
+    {
+        return new ItemPlacements(world, moved, arrivals, departures);
+    }
+
+    /**
+     * @param item The number of an item.
+     * @return The room the item is in, or NOWHERE.
+     */
+    public int getRoom(int item)
+    {
+        if (moved.isEmpty()) {
+            return world.getItemRoom(item);
+        }
+        Integer room = moved.get(item);
+        return room != null ? room : world.getItemRoom(item);
+    }
+
+    /**
+     * Tell whether an item that the world puts in a room is still there.
+     *
+     * @param item The number of an item that starts in the room.
+     * @param room The room the item starts in.
+     * @return true if the item has not moved out of the room.
+     */
+    public boolean isHome(int item, int room)
+    {
+        if (moved.isEmpty()) {
+            return true;
+        }
+        Integer now = moved.get(item);
+        return now == null || now == room;
+    }
+
+    /**
+     * @param room The number of a room.
+     * @return true if the room holds exactly the items the world puts in it.
+     */
+    public boolean isUntouched(int room)
+    {
+        return moved.isEmpty() || departures.get(room) == null && arrivals.get(room) == null;
+    }
+
+    /**
+     * Move an item into a room, or out of every room.
+     *
+     * @param item The item.
+     * @param room The room, or NOWHERE.
+     */
+    public void moveTo(Item item, int room)
+    {
+        int id = item.getId();
+        int from = getRoom(id);
+        if (from == room) {
+            return;
+        }
+        int home = world.getItemRoom(id);
+        if (home != NOWHERE && from == home) {
+            Integer gone = departures.get(home);
+            departures = departures.put(home, gone == null ? 1 : gone + 1);
+        }
+        else if (home != NOWHERE && room == home) {
+            int gone = departures.get(home);
+            departures = gone == 1 ? departures.remove(home) : departures.put(home, gone - 1);
+        }
+        if (from != NOWHERE && from != home) {
+            Arrivals left = arrivals.get(from).without(item);
+            arrivals = left == null ? arrivals.remove(from) : arrivals.put(from, left);
+        }
+        if (room == home) {
+            moved = moved.remove(id);
+        }
+        else {
+            moved = moved.put(id, room);
+            if (room != NOWHERE) {
+                Arrivals there = arrivals.get(room);
+                arrivals = arrivals.put(room, there == null ? Arrivals.of(item) : there.with(item));
+            }
+        }
+    }
+
+    /**
+     * Find an item of a name that was moved into a room.
+     *
+     * @param room The number of a room.
+     * @param name The name of the item, in any case.
+     * @return The item that arrived first, or null if no such item was moved into the room.
+     */
+    public Item findArrival(int room, CharSequence name)
+    {
+        Arrivals items = arrivals.get(room);
+        return items == null ? null : items.find(name);
+    }
+
+    /**
+     * @param room The number of a room.
+     * @return The items moved into the room that the world puts elsewhere,
+     * grouped by name in the order the names first arrived.
+     */
+    public List<Item> getArrivals(int room)
+    {
+        Arrivals items = arrivals.get(room);
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        return items.list();
+    }
+
+    /**
+     * @return The numbers of the items that are not where the world puts
+     * them, in increasing order.
+     */
+    public int[] getMovedItems()
+    {
+        int[] items = new int[moved.size()];
+        int[] count = new int[1];
+        moved.forEach((item, room) -> items[count[0]++] = item);
+        Arrays.sort(items);
+        return items;
+    }
+
+    /**
+     * @return The number of items that are not where the world puts them.
+     */
+    public int getMovedCount()
+    {
+        return moved.size();
+    }
+
+    /**
+     * The items moved into one room, by ItemKey hash. Arrivals never change;
+     * adding or removing an item makes new ones that share the rest.
+     */
+    private static final class Arrivals
+    {
+        private final PersistentMap<Integer, Group> groups; // The items of each name, by ItemKey hash
+        private final int count;                            // The number of items
+        private final int nextOrder;                        // The order of the next new name
+
+        /**
+         * Create arrivals from their groups.
+         */
+        private Arrivals(PersistentMap<Integer, Group> groups, int count, int nextOrder)
+        {
+            this.groups = groups;
+            this.count = count;
+            this.nextOrder = nextOrder;
+        }
+
+        /**
+         * @return The arrivals of a room that only holds one moved item.
+         */
+        static Arrivals of(Item item)
+        {
+            return new Arrivals(PersistentMap.<Integer, Group>empty().put(ItemKey.hash(item.getName()),
+                new Group(0, new Item[] {item}, null)), 1, 1);
+        }
+
+        /**
+         * @return These arrivals with an item added after the items of the same name.
+         */
+        Arrivals with(Item item)
+        {
+            int hash = ItemKey.hash(item.getName());
+            Group first = groups.get(hash);
+            Group group = Group.find(first, item.getName());
+            if (group == null) {
+                return new Arrivals(groups.put(hash, new Group(nextOrder, new Item[] {item}, first)), count + 1,
+                    nextOrder + 1);
+            }
+            Item[] items = Arrays.copyOf(group.items, group.items.length + 1);
+            items[group.items.length] = item;
+            return new Arrivals(groups.put(hash, new Group(group.order, items, Group.without(first, group))),
+                count + 1, nextOrder);
+        }
+
+        /**
+         * @return These arrivals without an item, or null if it was the only one.
+         */
+        Arrivals without(Item item)
+        {
+            if (count == 1) {
+                return null;
+            }
+            int hash = ItemKey.hash(item.getName());
+            Group first = groups.get(hash);
+            Group group = Group.find(first, item.getName());
+            Group others = Group.without(first, group);
+            if (group.items.length == 1) {
+                return new Arrivals(others == null ? groups.remove(hash) : groups.put(hash, others), count - 1,
+                    nextOrder);
+            }
+            Item[] rest = new Item[group.items.length - 1];
+            int i = 0;
+            for (Item other : group.items) {
+                if (other != item) {
+                    rest[i++] = other;
+                }
+            }
+            return new Arrivals(groups.put(hash, new Group(group.order, rest, others)), count - 1, nextOrder);
+        }
+
+        /**
+         * @return The item of a name that arrived first, or null.
+         */
+        Item find(CharSequence name)
+        {
+            Group group = Group.find(groups.get(ItemKey.hash(name)), name);
+            return group == null ? null : group.items[0];
+        }
+
+        /**
+         * @return The items grouped by name, in the order the names first arrived.
+         */
+        List<Item> list()
+        {
+            List<Group> sorted = new ArrayList<>(groups.size());
+            groups.forEach((hash, first) -> {
+                for (Group group = first; group != null; group = group.next) {
+                    sorted.add(group);
+                }
+            });
+            sorted.sort((a, b) -> Integer.compare(a.order, b.order));
+            List<Item> items = new ArrayList<>(count);
+            for (Group group : sorted) {
+                items.addAll(Arrays.asList(group.items));
+            }
+            return Collections.unmodifiableList(items);
+        }
+    }
+
+    /**
+     * The items of one name moved into a room, in the order they arrived.
+     * The groups whose names have the same hash are chained together.
+     */
+    private static final class Group
+    {
+        private final int order;        // When the name first arrived, relative to the other names
+        private final Item[] items;     // The items; never changed
+        private final Group next;       // The next group whose name has the same hash, or null
+
+        /**
+         * Create a group.
+         */
+        private Group(int order, Item[] items, Group next)
+        {
+            this.order = order;
+            this.items = items;
+            this.next = next;
+        }
+
+        /**
+         * @return The group of a chain with a name, or null.
+         */
+        static Group find(Group first, CharSequence name)
+        {
+            Group group = first;
+            while (group != null && !ItemKey.matches(group.items[0].getName(), name)) {
+                group = group.next;
+            }
+            return group;
+        }
+
+        /**
+         * @return A chain without one of its groups, or null if it was the only one.
+         */
+        static Group without(Group first, Group group)
+        {
+            if (first == group) {
+                return group.next;
+            }
+            return new Group(first.order, first.items, without(first.next, group));
+        }
+    }
+}
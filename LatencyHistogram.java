@@ -0,0 +1,209 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something takes, in nanoseconds, so that its mean and
+ * percentiles can be reported.
+ *
+ * Like an HDR histogram, the buckets are log-linear: durations below
+ * 64 ns are counted exactly, and every doubling above that is split into 32
+ * buckets of equal width, so every duration is known to within about 3%.
+ * Durations from 2^40 ns (about 18 minutes) on share the last bucket.
+ *
+ * Recording never locks and is one atomic addition to a bucket. The counts
+ * are kept in a few stripes, and each thread adds to the stripe its id
+ * falls in, so that threads on different processors seldom write to the
+ * same cache line. Reading adds the stripes up. A snapshot taken while
+ * durations are being recorded may miss the latest of them, but it never
+ * blocks the threads that record. The mean is worked out from the buckets,
+ * so it is as accurate as the durations.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class LatencyHistogram
+{
+    private static final int PRECISION = 6;                 // Durations below 2^PRECISION ns are counted exactly
+    private static final int HALF = 1 << (PRECISION - 1);   // Buckets per doubling above that
+    private static final long LIMIT = 1L << 40;             // Durations from here on share the last bucket
+    private static final int BUCKETS = (1 << PRECISION) + (40 - PRECISION) * HALF;
+    private static final int MAX = BUCKETS;                 // The slot of a stripe with its longest duration
+    private static final int STRIDE = BUCKETS + 16;         // The slots of a stripe, with room between stripes
+    private static final int STRIPES = Math.min(64,
+        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicLongArray counts;   // The buckets and longest duration of every stripe
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram()
+    {
+        counts = new AtomicLongArray(STRIPES * STRIDE);
+    }
+
+    /**
+     * Count one duration.
+     *
+     * @param nanos The duration in nanoseconds. A negative duration, from a
+     *              clock that went back, counts as 0.
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int stripe = stripe() * STRIDE;
+        counts.getAndIncrement(stripe + bucket(nanos));
+        if (nanos > counts.get(stripe + MAX)) {
+            counts.accumulateAndGet(stripe + MAX, nanos, Math::max);
+        }
+    }
+
+    /**
+     * Forget every duration counted so far. Durations recorded while the
+     * histogram is being reset may be forgotten as well.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * @return The durations counted so far.
+     */
+    public Snapshot snapshot()
+    {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        long max = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIDE; stripe += STRIDE) {
+            for (int b = 0; b < BUCKETS; b++) {
+                long n = counts.get(stripe + b);
+                merged[b] += n;
+                count += n;
+            }
+            max = Math.max(max, counts.get(stripe + MAX));
+        }
+        return new Snapshot(merged, count, max);
+    }
+
+    /**
+     * @return The stripe the current thread records in.
+     */
+    private static int stripe()
+    {
+        return (int) ((Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L) >>> 58) & (STRIPES - 1);
+    }
+
+    /**
+     * @return The bucket a duration is counted in.
+     */
+    private static int bucket(long nanos)
+    {
+        if (nanos >= LIMIT) {
+            nanos = LIMIT - 1;
+        }
+        if (nanos < 1 << PRECISION) {
+            return (int) nanos;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(nanos) - PRECISION;
+        return (1 << PRECISION) + (shift - 1) * HALF + (int) (nanos >>> shift) - HALF;
+    }
+
+    /**
+     * @return The shortest duration that is counted in a bucket.
+     */
+    private static long lowest(int bucket)
+    {
+        return bucket == 0 ? 0 : highest(bucket - 1) + 1;
+    }
+
+    /**
+     * @return The longest duration that is counted in a bucket.
+     */
+    private static long highest(int bucket)
+    {
+        if (bucket < 1 << PRECISION) {
+            return bucket;
+        }
+        int shift = (bucket - (1 << PRECISION)) / HALF + 1;
+        long first = (bucket - (1 << PRECISION)) % HALF + HALF;
+        return ((first + 1) << shift) - 1;
+    }
+
+    /**
+     * The durations a histogram had counted at one moment.
+     */
+    public static class Snapshot
+    {
+        private final long[] buckets;   // The number of durations in each bucket
+        private final long count;       // The number of durations
+        private final long max;         // The longest of them
+
+        /**
+         * Create a snapshot from merged counts.
+         */
+        private Snapshot(long[] buckets, long count, long max)
+        {
+            this.buckets = buckets;
+            this.count = count;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of durations counted.
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * @return The mean duration in nanoseconds, or 0 if there is none.
+         * Like the durations themselves, it is accurate to about 3%.
+         */
+        public double getMean()
+        {
+            if (count == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                if (buckets[b] > 0) {
+                    sum += buckets[b] * ((lowest(b) + Math.min(highest(b), max)) / 2.0);
+                }
+            }
+            return sum / count;
+        }
+
+        /**
+         * @return The longest duration in nanoseconds, or 0 if there is none.
+         */
+        public long getMax()
+        {
+            return max;
+        }
+
+        /**
+         * Return the duration that a share of the durations did not exceed.
+         * Like the durations themselves, it is accurate to about 3%.
+         *
+         * @param percentile The share, from 0 to 100.
+         * @return The duration in nanoseconds, or 0 if there is none.
+         */
+        public long getValueAtPercentile(double percentile)
+        {
+            long wanted = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= wanted) {
+                    return Math.min(highest(b), max);
+                }
+            }
+            return max;
+        }
+    }
+}
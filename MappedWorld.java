@@ -0,0 +1,496 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A World read straight from a compiled world image mapped into memory.
+ *
+ * Opening a world image only reads its header, so it takes the same time
+ * for thirteen rooms as for ten million; the operating system pages the
+ * image in as rooms are visited. Names and descriptions are decoded
+ * whenever they are asked for, so sessions should keep the rooms they use,
+ * as RoomTable does. Each item is decoded once, the first time any session
+ * asks for it, and then shared like the items of a HeapWorld. World images are written by WorldCompiler.
+ *
+ * A world image holds big-endian ints and bytes in this order:
+ *
+ *   header         magic, version, rooms, exits, items, characters, required
+ *                  items, start room, goal room, size of the key table, size
+ *                  of the item table
+ *   exit start     (rooms + 1) ints: the first exit of each room
+ *   exit targets   one int per exit
+ *   item start     (rooms + 1) ints: the first item of each room
+ *   item weights   one int per item
+ *   item chains    one int per item: the next item of its name in its room, or -1
+ *   item goals     one int per item: its bit in the goal, or -1, see WinCondition
+ *   item table     the first item + 1 of each name in each room, see ItemKey
+ *   character rooms    one int per character, -1 for wanderers
+ *   key table      open-addressing hash table of room number + 1 by room key
+ *   string start   (strings + 1) ints: where each string begins in the string data
+ *   exit directions    one byte per exit, the ordinal of its Direction
+ *   item flags     one byte per item, 1 if it can be picked up
+ *   string data    UTF-8 text of the key, name and description of every
+ *                  room, the name and description of every item, the name,
+ *                  description and dialogue of every character and the
+ *                  names of the required items
+ *
+ * A world image must be smaller than 2 GB.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class MappedWorld extends World
+{
+    private static final int MAGIC = 0x4A48574D;    // "JHWM", the first four bytes of every world image
+    private static final int VERSION = 3;           // The version of the format written by this class
+    private static final int HEADER_SIZE = 44;      // The size of the header in bytes
+
+    private ByteBuffer image;               // The mapped world image
+    private int roomCount;                  // The number of rooms
+    private int exitCount;                  // The number of exits
+    private int itemCount;                  // The number of items
+    private int startRoom;                  // The room the player starts in
+    private int goalRoom;                   // The room the jewels must be brought to
+    private int keyBits;                    // log2 of the size of the key table
+    private int itemTableSize;              // The size of the item table
+    private int exitStartAt;                // Where each section starts in the image
+    private int exitTargetsAt;
+    private int itemStartAt;
+    private int itemWeightsAt;
+    private int itemNextAt;
+    private int itemGoalsAt;
+    private int itemTableAt;
+    private int characterRoomsAt;
+    private int keyTableAt;
+    private int stringStartAt;
+    private int exitDirectionsAt;
+    private int itemFlagsAt;
+    private int stringDataAt;
+    private Character[] characters;         // Templates of all characters
+    private List<String> requiredItems;     // The items needed to win
+    private ConcurrentHashMap<Integer, Item> items;     // The items decoded so far, shared by every session
+
+    /**
+     * Read the header of a world image and the few parts of it that every
+     * session needs.
+     *
+     * @param source The name of the image, used in error messages.
+     * @param image The image.
+     */
+    private MappedWorld(String source, ByteBuffer image) throws IOException
+    {
+        this.image = image;
+        if (image.capacity() < HEADER_SIZE || image.getInt(0) != MAGIC) {
+            throw new IOException(source + ": not a world image");
+        }
+        if (image.getInt(4) != VERSION) {
+            throw new IOException(source + ": unsupported world image version " + image.getInt(4));
+        }
+        roomCount = image.getInt(8);
+        exitCount = image.getInt(12);
+        itemCount = image.getInt(16);
+        int characterCount = image.getInt(20);
+        int requiredCount = image.getInt(24);
+        startRoom = image.getInt(28);
+        goalRoom = image.getInt(32);
+        int keyTableSize = image.getInt(36);
+        keyBits = Integer.numberOfTrailingZeros(keyTableSize);
+        itemTableSize = image.getInt(40);
+
+        long at = HEADER_SIZE;
+        exitStartAt = (int) at;
+        at += 4L * (roomCount + 1);
+        exitTargetsAt = (int) at;
+        at += 4L * exitCount;
+        itemStartAt = (int) at;
+        at += 4L * (roomCount + 1);
+        itemWeightsAt = (int) at;
+        at += 4L * itemCount;
+        itemNextAt = (int) at;
+        at += 4L * itemCount;
+        itemGoalsAt = (int) at;
+        at += 4L * itemCount;
+        itemTableAt = (int) at;
+        at += 4L * itemTableSize;
+        characterRoomsAt = (int) at;
+        at += 4L * characterCount;
+        keyTableAt = (int) at;
+        at += 4L * keyTableSize;
+        stringStartAt = (int) at;
+        at += 4L * (stringCount(roomCount, itemCount, characterCount, requiredCount) + 1);
+        exitDirectionsAt = (int) at;
+        at += exitCount;
+        itemFlagsAt = (int) at;
+        at += itemCount;
+        stringDataAt = (int) at;
+        if (at > image.capacity() || keyTableSize < 2 || Integer.bitCount(keyTableSize) != 1
+                || itemTableSize < 2 || Integer.bitCount(itemTableSize) != 1
+                || at + image.getInt(stringDataAt - itemCount - exitCount - 4) > image.capacity()) {
+            throw new IOException(source + ": the world image is truncated or corrupt");
+        }
+
+        characters = new Character[characterCount];
+        int first = 3 * roomCount + 2 * itemCount;
+        for (int c = 0; c < characterCount; c++) {
+            characters[c] = new Character(string(first + 3 * c), string(first + 3 * c + 1), string(first + 3 * c + 2));
+        }
+        List<String> required = new ArrayList<>(requiredCount);
+        for (int q = 0; q < requiredCount; q++) {
+            required.add(string(first + 3 * characterCount + q));
+        }
+        requiredItems = Collections.unmodifiableList(required);
+        items = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Map a world image into memory.
+     *
+     * @param file The world image.
+     * @return The world.
+     */
+    public static MappedWorld open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + ": the world image is larger than 2 GB");
+            }
+            return new MappedWorld(file.toString(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @param file A file.
+     * @return true if the file starts like a world image.
+     */
+    public static boolean isImage(Path file) throws IOException
+    {
+        if (Files.size(file) < HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Write a world as a world image.
+     *
+     * @param world The world.
+     * @param file The file to write the image to.
+     */
+    public static void write(World world, Path file) throws IOException
+    {
+        int rooms = world.getRoomCount();
+        int exits = world.getExitCount();
+        int items = world.getItemCount();
+        Character[] characters = new Character[world.getCharacterCount()];
+        for (int c = 0; c < characters.length; c++) {
+            characters[c] = world.createCharacter(c);
+        }
+        List<String> required = world.getRequiredItems();
+        int strings = stringCount(rooms, items, characters.length, required.size());
+
+        // Build the key table, at most two thirds full
+        int keyTableSize = Integer.highestOneBit(Math.max(2, rooms + rooms / 2) - 1) << 1;
+        int keyBits = Integer.numberOfTrailingZeros(keyTableSize);
+        int[] keyTable = new int[keyTableSize];
+        for (int r = 0; r < rooms; r++) {
+            int slot = slot(world.getRoomKey(r), keyBits);
+            while (keyTable[slot] != 0) {
+                slot = (slot + 1) & (keyTableSize - 1);
+            }
+            keyTable[slot] = r + 1;
+        }
+
+        int[] itemNext = ItemKey.buildChains(world);
+        int[] itemTable = ItemKey.buildTable(world, itemNext);
+        int[] itemGoalBits = WinCondition.buildItemBits(world);
+
+        // Measure the strings so that their offsets can be written first
+        int[] stringStart = new int[strings + 1];
+        for (int s = 0; s < strings; s++) {
+            stringStart[s + 1] = stringStart[s] + string(world, characters, s).getBytes(StandardCharsets.UTF_8).length;
+            if (stringStart[s + 1] < 0) {
+                throw new IOException("The world is too large for a world image");
+            }
+        }
+        long size = HEADER_SIZE + 4L * (2 * (rooms + 1) + exits + 3 * items + itemTable.length + characters.length
+            + keyTableSize + strings + 1)
+            + exits + items + stringStart[strings];
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The world is too large for a world image");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            int[] header = { MAGIC, VERSION, rooms, exits, items, characters.length, required.size(),
+                             world.getStartRoom(), world.getGoalRoom(), keyTableSize, itemTable.length };
+            for (int value : header) {
+                out.writeInt(value);
+            }
+            for (int r = 0; r <= rooms; r++) {
+                out.writeInt(world.getFirstExit(r));
+            }
+            for (int e = 0; e < exits; e++) {
+                out.writeInt(world.getExitTarget(e));
+            }
+            for (int r = 0; r <= rooms; r++) {
+                out.writeInt(world.getFirstItem(r));
+            }
+            for (int i = 0; i < items; i++) {
+                out.writeInt(world.getItem(i).getWeight());
+            }
+            for (int next : itemNext) {
+                out.writeInt(next);
+            }
+            for (int bit : itemGoalBits) {
+                out.writeInt(bit);
+            }
+            for (int slot : itemTable) {
+                out.writeInt(slot);
+            }
+            for (int c = 0; c < characters.length; c++) {
+                out.writeInt(world.getCharacterRoom(c));
+            }
+            for (int slot : keyTable) {
+                out.writeInt(slot);
+            }
+            for (int start : stringStart) {
+                out.writeInt(start);
+            }
+            for (int e = 0; e < exits; e++) {
+                out.writeByte(world.getExitDirection(e).ordinal());
+            }
+            for (int i = 0; i < items; i++) {
+                out.writeByte(world.getItem(i).isPickable() ? 1 : 0);
+            }
+            for (int s = 0; s < strings; s++) {
+                out.write(string(world, characters, s).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * @return The number of strings in an image of a world of the given size.
+     */
+    private static int stringCount(int rooms, int items, int characters, int required)
+    {
+        return 3 * rooms + 2 * items + 3 * characters + required;
+    }
+
+    /**
+     * Return a string of a world in the order of the string data.
+     *
+     * @param world The world.
+     * @param characters The world's characters.
+     * @param s The number of the string.
+     * @return The string.
+     */
+    private static String string(World world, Character[] characters, int s)
+    {
+        int rooms = 3 * world.getRoomCount();
+        int items = 2 * world.getItemCount();
+        if (s < rooms) {
+            int room = s / 3;
+            return s % 3 == 0 ? world.getRoomKey(room) : s % 3 == 1 ? world.getRoomName(room) : world.getRoomDescription(room);
+        }
+        s -= rooms;
+        if (s < items) {
+            Item item = world.getItem(s / 2);
+            return s % 2 == 0 ? item.getName() : item.getDescription();
+        }
+        s -= items;
+        if (s < 3 * characters.length) {
+            Character character = characters[s / 3];
+            return s % 3 == 0 ? character.getName() : s % 3 == 1 ? character.getDescription() : character.getDialogue();
+        }
+        return world.getRequiredItems().get(s - 3 * characters.length);
+    }
+
+    /**
+     * @return The slot of the key table to start looking for a room key in.
+     */
+    private static int slot(String key, int keyBits)
+    {
+        return (key.hashCode() * 0x9E3779B9) >>> (32 - keyBits);
+    }
+
+    /**
+     * @return The bytes of a string in the string data.
+     */
+    private byte[] bytes(int s)
+    {
+        int start = image.getInt(stringStartAt + 4 * s);
+        byte[] bytes = new byte[image.getInt(stringStartAt + 4 * s + 4) - start];
+        image.get(stringDataAt + start, bytes);
+        return bytes;
+    }
+
+    /**
+     * @return A string of the string data.
+     */
+    private String string(int s)
+    {
+        return new String(bytes(s), StandardCharsets.UTF_8);
+    }
+
+    public int getRoomCount()
+    {
+        return roomCount;
+    }
+
+    public String getRoomKey(int room)
+    {
+        return string(3 * room);
+    }
+
+    public String getRoomName(int room)
+    {
+        return string(3 * room + 1);
+    }
+
+    public String getRoomDescription(int room)
+    {
+        return string(3 * room + 2);
+    }
+
+    public int findRoom(String key)
+    {
+        byte[] wanted = key.getBytes(StandardCharsets.UTF_8);
+        int mask = (1 << keyBits) - 1;
+        for (int slot = slot(key, keyBits); ; slot = (slot + 1) & mask) {
+            int entry = image.getInt(keyTableAt + 4 * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (Arrays.equals(bytes(3 * (entry - 1)), wanted)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public int getExitCount()
+    {
+        return exitCount;
+    }
+
+    public int getFirstExit(int room)
+    {
+        return image.getInt(exitStartAt + 4 * room);
+    }
+
+    public Direction getExitDirection(int exit)
+    {
+        return Direction.of(image.get(exitDirectionsAt + exit));
+    }
+
+    public int getExitTarget(int exit)
+    {
+        return image.getInt(exitTargetsAt + 4 * exit);
+    }
+
+    public int getItemCount()
+    {
+        return itemCount;
+    }
+
+    public int getFirstItem(int room)
+    {
+        return image.getInt(itemStartAt + 4 * room);
+    }
+
+    public Item getItem(int item)
+    {
+        Item prototype = items.get(item);
+        return prototype != null ? prototype : items.computeIfAbsent(item, this::readItem);
+    }
+
+    public int getItemGoalBit(int item)
+    {
+        return image.getInt(itemGoalsAt + 4 * item);
+    }
+
+    /**
+     * @return An item decoded from the image.
+     */
+    private Item readItem(int item)
+    {
+        int s = 3 * roomCount + 2 * item;
+        return new Item(item, string(s), string(s + 1), image.getInt(itemWeightsAt + 4 * item),
+            image.get(itemFlagsAt + item) == 1);
+    }
+
+    public int getItemRoom(int item)
+    {
+        // The last room whose first item is at or before the item
+        int low = 0;
+        int high = roomCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getFirstItem(middle) <= item) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getNextItemNamed(int item)
+    {
+        return image.getInt(itemNextAt + 4 * item);
+    }
+
+    int getItemTableSize()
+    {
+        return itemTableSize;
+    }
+
+    int getItemTableEntry(int slot)
+    {
+        return image.getInt(itemTableAt + 4 * slot);
+    }
+
+    public int getCharacterCount()
+    {
+        return characters.length;
+    }
+
+    public Character createCharacter(int character)
+    {
+        Character template = characters[character];
+        return new Character(template.getName(), template.getDescription(), template.getDialogue());
+    }
+
+    public int getCharacterRoom(int character)
+    {
+        return image.getInt(characterRoomsAt + 4 * character);
+    }
+
+    public int getStartRoom()
+    {
+        return startRoom;
+    }
+
+    public int getGoalRoom()
+    {
+        return goalRoom;
+    }
+
+    public List<String> getRequiredItems()
+    {
+        return requiredItems;
+    }
+}
@@ -0,0 +1,72 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a session's output in memory, for tests, replays and callers that
+ * drive a game from code. It holds the text of the latest turn and a CRC32
+ * hash of everything the session has written, so two runs of the same
+ * commands can be compared without storing their whole output.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class MemoryOutput implements OutputSink
+{
+    private byte[] lastTurn;        // The text of the latest turn, as UTF-8
+    private int lastLength;         // The number of bytes of the latest turn
+    private CRC32 hash;             // Hash of all output so far
+    private long totalBytes;        // The number of bytes written so far
+
+    /**
+     * Create an empty in-memory sink.
+     */
+    public MemoryOutput()
+    {
+        lastTurn = new byte[1024];
+        lastLength = 0;
+        hash = new CRC32();
+        totalBytes = 0;
+    }
+
+    /**
+     * Keep the text of one turn and add it to the hash.
+     *
+     * @param turn The text of the turn.
+     */
+    public void writeTurn(TurnBuffer turn)
+    {
+        int length = turn.length();
+        if (length > lastTurn.length) {
+            lastTurn = Arrays.copyOf(lastTurn, Math.max(length, lastTurn.length * 2));
+        }
+        System.arraycopy(turn.array(), 0, lastTurn, 0, length);
+        lastLength = length;
+        hash.update(lastTurn, 0, length);
+        totalBytes += length;
+    }
+
+    /**
+     * @return The text of the latest turn.
+     */
+    public String getLastTurn()
+    {
+        return new String(lastTurn, 0, lastLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The CRC32 hash of all output so far.
+     */
+    public long getHash()
+    {
+        return hash.getValue();
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+}
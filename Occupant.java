@@ -0,0 +1,14 @@
+/**
+ * Anyone who can be in a room: a character or a player. Where occupants
+ * are is kept by a RoomOccupancy.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public interface Occupant
+{
+    /**
+     * @return The name of the occupant.
+     */
+    String getName();
+}
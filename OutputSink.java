@@ -0,0 +1,18 @@
+/**
+ * The destination of a game session's output. The game collects the text
+ * of a whole turn in a TurnBuffer and hands it to its sink once, when the
+ * turn is over.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public interface OutputSink
+{
+    /**
+     * Write the text of one turn. The buffer is reused for the next turn,
+     * so a sink that keeps the text must copy it.
+     *
+     * @param turn The text of the turn.
+     */
+    void writeTurn(TurnBuffer turn);
+}
@@ -3,8 +3,8 @@ import java.util.Scanner;
 /**
  * This parser reads user input and tries to interpret it as an "Adventure"
  * command. Every time it is called it reads a line from the terminal and
- * tries to interpret the line as a two word command. It returns the command
- * as an object of class Command.
+ * tries to interpret the line as a command of one or more words. It returns
+ * the command as an object of class Command.
  *
  * The parser has a set of known command words. It checks user input against
  * the known commands, and if the input is not one of the known commands, it
@@ -18,6 +18,7 @@ public class Parser
 {
     private CommandWords commands;  // holds all valid command words
     private Scanner reader;         // source of command input
+    private TurnStatistics statistics;  // where the time to parse a line goes, or null
 
     /**
      * Create a parser to read from the terminal window.
@@ -25,7 +26,19 @@ public class Parser
     public Parser() 
     {
         commands = new CommandWords();
-        reader = new Scanner(System.in);
+        reader = null;              // the terminal is only opened when getCommand() is used
+        statistics = null;          // parsing is not timed unless asked for
+    }
+
+    /**
+     * Time every line that is parsed. Waiting for the terminal is not
+     * counted, only the parsing itself.
+     * 
+     * @param statistics Where the times go, or null to stop timing.
+     */
+    public void setStatistics(TurnStatistics statistics)
+    {
+        this.statistics = statistics;
     }
 
     /**
@@ -33,35 +46,78 @@ public class Parser
      */
     public Command getCommand() 
     {
-        String inputLine;   // will hold the full input line
-        String word1 = null;
-        String word2 = null;
-        String word3 = null;
-        
+        if(reader == null) {
+            reader = new Scanner(System.in);
+        }
         System.out.print("> ");     // print prompt
 
-        inputLine = reader.nextLine();
+        return parse(reader.nextLine());
+    }
 
-        // Find up to two words on the line.
-        Scanner tokenizer = new Scanner(inputLine);
-        if(tokenizer.hasNext()) {
-            word1 = tokenizer.next();      // get first word
-            if(tokenizer.hasNext()) {
-                word2 = tokenizer.next();      // get second word
-                if(tokenizer.hasNext()) {
-                    word3 = tokenizer.next(); // get third word
-                }
-            }
-        }
+    /**
+     * Interpret a line of input as a command. This does not touch the
+     * terminal, so it can be used to drive a game from code.
+     * 
+     * @param inputLine The line to interpret.
+     * @return The command found on the line.
+     */
+    public Command parse(CharSequence inputLine) 
+    {
+        return parse(inputLine, new Command());
+    }
 
-        // Now check whether this word is known. If so, create a command
-        // with it. If not, create a "null" command (for unknown command).
-        if(commands.isCommand(word1)) {
-            return new Command(word1, word2, word3);  
+    /**
+     * Interpret a line of input as a command, filling a command object that
+     * can be reused for every line. The words are found by scanning the line
+     * once; they are not copied until the game asks for them.
+     * 
+     * @param inputLine The line to interpret.
+     * @param command The command to fill.
+     * @return The filled command.
+     */
+    public Command parse(CharSequence inputLine, Command command) 
+    {
+        if(statistics == null) {
+            return findWords(inputLine, command);
         }
-        else {
-            return new Command(null, word2, word3);  
+        long start = System.nanoTime();
+        findWords(inputLine, command);
+        statistics.recordParse(System.nanoTime() - start);
+        return command;
+    }
+
+    /**
+     * Fill a command with the words on a line.
+     * 
+     * @param inputLine The line to interpret.
+     * @param command The command to fill.
+     * @return The filled command.
+     */
+    private Command findWords(CharSequence inputLine, Command command) 
+    {
+        command.reset(inputLine);
+
+        // Find all words on the line.
+        int length = inputLine.length();
+        int i = 0;
+        while(i < length) {
+            while(i < length && java.lang.Character.isWhitespace(inputLine.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while(i < length && !java.lang.Character.isWhitespace(inputLine.charAt(i))) {
+                i++;
+            }
+            if(i > start) {
+                if(command.getWordCount() == 0) {
+                    // Resolve the command word once, so the game can dispatch
+                    // on it without comparing strings again.
+                    command.setCommandWord(commands.getCommandWord(inputLine, start, i));
+                }
+                command.addWord(start, i);
+            }
         }
+        return command;
     }
 
     /**
@@ -0,0 +1,361 @@
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map that shares its structure with the maps it was
+ * made from. Adding or removing a key returns a new map and leaves the old
+ * one as it was, copying only the path of nodes from the root to the key:
+ * at most seven small arrays, however large the map is.
+ *
+ * The map is a hash array mapped trie. Each node uses five bits of the
+ * key's hash to pick one of 32 branches and keeps only the branches that
+ * are used, found through a bitmap. Keys whose hashes are equal share a
+ * collision node.
+ *
+ * Because a map never changes, holding one is enough to keep a snapshot of
+ * it, and snapshots may be read from any thread. Null keys and null values
+ * are not allowed.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public final class PersistentMap<K, V>
+{
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;        // The root node, or null if the map is empty
+    private final int size;         // The number of keys
+
+    /**
+     * @param root The root node, or null.
+     * @param size The number of keys.
+     */
+    private PersistentMap(Node root, int size)
+    {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty()
+    {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @return The number of keys in the map.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if the map has no keys.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @param key A key.
+     * @return The value of the key, or null if the map does not hold it.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key)
+    {
+        return root == null ? null : (V) root.get(0, hash(key), key);
+    }
+
+    /**
+     * @param key A key.
+     * @return true if the map holds the key.
+     */
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * @param key A key.
+     * @param value Its value.
+     * @return A map that is this map with the key set to the value. It is
+     * this map itself if the key already had the value.
+     */
+    public PersistentMap<K, V> put(K key, V value)
+    {
+        if (value == null) {
+            throw new NullPointerException("null value");
+        }
+        int hash = hash(key);
+        boolean added = root == null || root.get(0, hash, key) == null;
+        Node node = (root == null ? BitmapNode.EMPTY : root).put(0, hash, key, value);
+        return node == root ? this : new PersistentMap<>(node, added ? size + 1 : size);
+    }
+
+    /**
+     * @param key A key.
+     * @return A map that is this map without the key. It is this map itself
+     * if the map does not hold the key.
+     */
+    public PersistentMap<K, V> remove(Object key)
+    {
+        int hash = hash(key);
+        if (root == null || root.get(0, hash, key) == null) {
+            return this;
+        }
+        Node node = root.remove(0, hash, key);
+        return node == null ? empty() : new PersistentMap<>(node, size - 1);
+    }
+
+    /**
+     * Call an action for every key and value, in no particular order.
+     *
+     * @param action The action.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action)
+    {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    /**
+     * @return The hash of a key, with its high bits mixed into the low ones.
+     */
+    private static int hash(Object key)
+    {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A node of the trie.
+     */
+    private abstract static class Node
+    {
+        /**
+         * @return The value of a key below this node, or null.
+         */
+        abstract Object get(int shift, int hash, Object key);
+
+        /**
+         * @return This node with the key set to the value, or this node itself if nothing changed.
+         */
+        abstract Node put(int shift, int hash, Object key, Object value);
+
+        /**
+         * @return This node without the key, or null if it would be empty.
+         */
+        abstract Node remove(int shift, int hash, Object key);
+
+        /**
+         * Call an action for every key and value below this node.
+         */
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * A node with up to 32 branches. Each branch is a key and its value, or
+     * a null key and the node below.
+     */
+    private static final class BitmapNode extends Node
+    {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;           // The branches in use
+        final Object[] array;       // Key and value, or null and node, of each branch in use
+
+        BitmapNode(int bitmap, Object[] array)
+        {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Object get(int shift, int hash, Object key)
+        {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).get(shift + 5, hash, key);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        Node put(int shift, int hash, Object key, Object value)
+        {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[array.length + 2];
+                System.arraycopy(array, 0, grown, 0, i);
+                grown[i] = key;
+                grown[i + 1] = value;
+                System.arraycopy(array, i, grown, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, grown);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(shift + 5, hash, key, value);
+                return child == v ? this : with(i + 1, null, child);
+            }
+            if (key.equals(k)) {
+                return value == v ? this : with(i + 1, k, value);
+            }
+            return with(i + 1, null, pair(shift + 5, k, v, hash, key, value));
+        }
+
+        Node remove(int shift, int hash, Object key)
+        {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node removed = child.remove(shift + 5, hash, key);
+                if (removed == child) {
+                    return this;
+                }
+                if (removed != null) {
+                    return with(i + 1, null, removed);
+                }
+            }
+            else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, shrunk);
+        }
+
+        void forEach(BiConsumer<Object, Object> action)
+        {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                }
+                else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        /**
+         * @return A copy of this node with one branch replaced.
+         */
+        private BitmapNode with(int valueIndex, Object key, Object value)
+        {
+            Object[] copy = array.clone();
+            copy[valueIndex - 1] = key;
+            copy[valueIndex] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        /**
+         * @return A node holding two different keys.
+         */
+        private static Node pair(int shift, Object key1, Object value1, int hash2, Object key2, Object value2)
+        {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            return EMPTY.put(shift, hash1, key1, value1).put(shift, hash2, key2, value2);
+        }
+    }
+
+    /**
+     * A node holding keys whose hashes are all equal.
+     */
+    private static final class CollisionNode extends Node
+    {
+        final int hash;             // The hash of every key
+        final Object[] array;       // Key and value of each key
+
+        CollisionNode(int hash, Object[] array)
+        {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object get(int shift, int hash, Object key)
+        {
+            int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        Node put(int shift, int hash, Object key, Object value)
+        {
+            if (hash != this.hash) {
+                // Push this node one level down, next to the new key
+                int bit = 1 << ((this.hash >>> shift) & 31);
+                return new BitmapNode(bit, new Object[] {null, this}).put(shift, hash, key, value);
+            }
+            int i = find(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] grown = Arrays.copyOf(array, array.length + 2);
+            grown[array.length] = key;
+            grown[array.length + 1] = value;
+            return new CollisionNode(hash, grown);
+        }
+
+        Node remove(int shift, int hash, Object key)
+        {
+            int i = find(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new CollisionNode(hash, shrunk);
+        }
+
+        void forEach(BiConsumer<Object, Object> action)
+        {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        /**
+         * @return The index of a key in the array, or -1.
+         */
+        private int find(Object key)
+        {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
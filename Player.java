@@ -1,14 +1,24 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This class represents a Player.
  * The player has a name, an inventory for the items collected, a weight limit and keeps track of the 
+ * 
+ * Items in the inventory are found by the ItemKey hash of their name and
+ * compared with ItemKey.matches(), so their names may be typed in any case
+ * without making a copy of them, and they are listed in the order they
+ * were picked up.
+ * The inventory is a persistent map, so fork() copies a player in constant
+ * time and the copy shares the inventory until either side changes it.
+ * Next to the inventory the player keeps a bitset of the items of the
+ * WinCondition they carry, so the win check costs a few word operations.
  *
  * @author Jawhara Jannah
  * @version 1.0
  */
-public class Player
+public class Player implements Occupant
 {
     private String name;                                            // The player's name
     private Room currentRoom;                                       // The room the player is currently in                                        
@@ -16,8 +26,11 @@ public class Player
     private int currentWeight;                                      // Current weight of the items the player is carrying
     private int maxWeight;                                          // The maximum weight the player can carry
     private int jewelsCollected;                                    // The number of jewels the player has collected 
-    private HashMap<String, Item> inventory;                        // Stores items in the inventory
-    private ArrayList<Item> requiredJewels = new ArrayList<>();     // List of jewels that are required to win
+    private PersistentMap<Integer, Carried> inventory;              // Stores items in the inventory by ItemKey hash
+    private long pickedUp;                                          // The number of items ever picked up, to order the inventory
+    private WinCondition goal;                                      // The items required to win
+    private long[] requiredHeld;                                    // The bits of the required items carried
+    private List<InventoryListener> listeners = new ArrayList<>();  // Told when the inventory changes
     
     /**
      * Constructor to initialize the player with a name and the maximum carrying weight
@@ -26,14 +39,87 @@ public class Player
      * @param maxCarryWeight The maximum weight the player can carry
      */
     public Player(String name, int maxCarryWeight)
+    {
+        this(name, maxCarryWeight, new WinCondition(Collections.emptyList()));
+    }
+    
+    /**
+     * Constructor to initialize the player with a name, the maximum carrying weight
+     * and the items they must collect to win
+     * 
+     * @param name The name of the player
+     * @param maxCarryWeight The maximum weight the player can carry
+     * @param goal The items required to win
+     */
+    public Player(String name, int maxCarryWeight, WinCondition goal)
     {
         this.name = name;
         this.currentWeight = 0;
         this.maxWeight = maxCarryWeight;
         this.jewelsCollected = 0;
-        this.inventory = new HashMap<>(); 
+        this.inventory = PersistentMap.empty(); 
+        this.goal = goal;
+        this.requiredHeld = goal.newSet();
     }
     
+    /**
+     * An item in the inventory and when it was picked up. The items whose
+     * names have the same hash are chained together.
+     */
+    private static final class Carried
+    {
+        final Item item;        // The item
+        final long order;       // The number of items picked up before it
+        final Carried next;     // The next item whose name has the same hash, or null
+
+        Carried(Item item, long order, Carried next)
+        {
+            this.item = item;
+            this.order = order;
+            this.next = next;
+        }
+
+        /**
+         * @return The item of a chain with a name, or null.
+         */
+        static Carried find(Carried first, String itemName)
+        {
+            Carried carried = first;
+            while (carried != null && !ItemKey.matches(carried.item.getName(), itemName)) {
+                carried = carried.next;
+            }
+            return carried;
+        }
+
+        /**
+         * @return A chain without one of its items, or null if it was the only one.
+         */
+        static Carried without(Carried first, Carried carried)
+        {
+            if (first == carried) {
+                return carried.next;
+            }
+            return new Carried(first.item, first.order, without(first.next, carried));
+        }
+    }
+
+    /**
+     * Create a copy of a player with the same inventory, that changes
+     * independently from then on. Inventory listeners are not copied.
+     * 
+     * @return The copy
+     */
+    public Player fork()
+    {
+        Player copy = new Player(name, maxWeight, goal);
+        copy.currentWeight = currentWeight;
+        copy.jewelsCollected = jewelsCollected;
+        copy.inventory = inventory;
+        copy.pickedUp = pickedUp;
+        copy.requiredHeld = requiredHeld.clone();
+        return copy;
+    }
+
     /**
      * @return The name of the player
      */
@@ -73,26 +159,50 @@ public class Player
     }
 
     /**
-     * Adds an item to the player's inventor if it does not exceed the maximum carry weight
-     * Otherwise prints out an error message
+     * Checks whether an item with the given name is in the player's inventory
+     * 
+     * @param itemName The name of the item
+     * @return true if the player is carrying the item, else false
+     */
+    public boolean hasItem(String itemName)
+    {
+        return Carried.find(inventory.get(ItemKey.hash(itemName)), itemName) != null;
+    }
+    
+    /**
+     * Checks whether the item can be carried without exceeding the maximum carry weight
+     * 
+     * @param item The item to check
+     * @return true if the item fits within the weight limit, else false
+     */
+    public boolean canCarry(Item item)
+    {
+        return currentWeight + item.getWeight() <= maxWeight;
+    }
+    
+    /**
+     * Adds an item to the player's inventor if it is not already there and
+     * does not exceed the maximum carry weight
      * 
      * @param item The item to be added
      * @ return true if the item was added, else false
      */
     public boolean addItem(Item item) 
     {
-        if (inventory.containsKey(item.getName())) {
-            System.out.println("\nYou already have " + item.getName() + " in your inventory.\n");
+        if (hasItem(item.getName()) || !canCarry(item)) {
             return false;
         }
     
-        if (currentWeight + item.getWeight() > maxWeight) {
-            System.out.println("\nYou can't carry that much weight!\n");
-            return false;
-        }
-    
-        inventory.put(item.getName(), item); 
+        int hash = ItemKey.hash(item.getName());
+        inventory = inventory.put(hash, new Carried(item, pickedUp++, inventory.get(hash)));
         currentWeight += item.getWeight();  
+        int bit = goal.getBit(item);
+        if (bit >= 0) {
+            requiredHeld[bit >>> 6] |= 1L << bit;
+        }
+        for (InventoryListener listener : listeners) {
+            listener.itemAdded(item);
+        }
         return true;
     }
 
@@ -103,14 +213,37 @@ public class Player
      * @return true if the item was removed, else false
      */
     public boolean removeItem(String itemName) {
-        Item item = inventory.remove(itemName);
-        if (item != null) {
+        int hash = ItemKey.hash(itemName);
+        Carried first = inventory.get(hash);
+        Carried carried = Carried.find(first, itemName);
+        if (carried != null) {
+            Item item = carried.item;
+            Carried rest = Carried.without(first, carried);
+            inventory = rest == null ? inventory.remove(hash) : inventory.put(hash, rest);
             currentWeight -= item.getWeight();
+            int bit = goal.getBit(item);
+            if (bit >= 0) {
+                requiredHeld[bit >>> 6] &= ~(1L << bit);
+            }
+            for (InventoryListener listener : listeners) {
+                listener.itemRemoved(item);
+            }
             return true;
         }
         return false;
     }
     
+    /**
+     * Adds a listener that is told whenever an item is added to or removed
+     * from the inventory
+     * 
+     * @param listener The listener
+     */
+    public void addInventoryListener(InventoryListener listener)
+    {
+        listeners.add(listener);
+    }
+    
     /**
      * Gets an item from the player's inventory
      * 
@@ -118,32 +251,46 @@ public class Player
      * @return The itm if found
      */
     public Item getItem(String itemName) {
-        return inventory.get(itemName); 
+        Carried carried = Carried.find(inventory.get(ItemKey.hash(itemName)), itemName);
+        return carried == null ? null : carried.item; 
     }
     
     /**
      * Gets the player's inventory
      * 
-     * @return A HashMap containing all the items in the player's inventory
+     * @return A new list of the items in the player's inventory, in the order they were picked up
      */
-    public HashMap<String, Item> getInventory() {
-        return inventory; 
+    public List<Item> getInventory() {
+        List<Carried> carried = new ArrayList<>(inventory.size());
+        inventory.forEach((hash, first) -> {
+            for (Carried c = first; c != null; c = c.next) {
+                carried.add(c);
+            }
+        });
+        carried.sort((a, b) -> Long.compare(a.order, b.order));
+        List<Item> items = new ArrayList<>(carried.size());
+        for (Carried c : carried) {
+            items.add(c.item);
+        }
+        return items; 
     }
     
     /**
-     * Prints the items in the player's inventory
+     * Describes the items in the player's inventory
+     * 
+     * @return A description of the inventory and its total weight
      */
-    public void printInventory() 
+    public String getInventoryDescription() 
     {
         if (inventory.isEmpty()) {
-            System.out.println("\nYour inventory is empty.\n");
-        } else {
-            System.out.println("\nYou are carrying:");
-            for (Item item : inventory.values()) {
-                System.out.println("- " + item.getName() + ": " + item.getDescription());
-            }
-            System.out.println("Total weight: " + currentWeight + "/" + maxWeight + ".\n");
+            return "\nYour inventory is empty.\n\n";
+        }
+        StringBuilder description = new StringBuilder("\nYou are carrying:\n");
+        for (Item item : getInventory()) {
+            description.append("- ").append(item.getName()).append(": ").append(item.getDescription()).append("\n");
         }
+        description.append("Total weight: ").append(currentWeight).append("/").append(maxWeight).append(".\n\n");
+        return description.toString();
     }
     
     /**
@@ -153,7 +300,15 @@ public class Player
      */
     public boolean hasAllJewels() 
     {
-        return inventory.keySet().containsAll(requiredJewels);
+        return goal.isMet(requiredHeld);
+    }
+    
+    /**
+     * @return The names of the required jewels the player is not carrying, in the order of the goal
+     */
+    public List<String> getMissingJewels()
+    {
+        return goal.getMissing(requiredHeld);
     }
 }
 
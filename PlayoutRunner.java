@@ -0,0 +1,470 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Plays a world many times with simulated players, to see how it plays:
+ * how many turns it takes to win, how often each room is visited and each
+ * item picked up, and where players get stuck.
+ *
+ * Every playout is a real game session on a GameEngine whose output is
+ * discarded; the players send it commands directly, without a parser.
+ * Two kinds of player are simulated. A random player takes an item it
+ * sees half of the time and otherwise walks through a random exit. A
+ * greedy player takes every required item it sees, does not turn straight
+ * back unless it must, and heads for the goal room as soon as it carries
+ * everything.
+ *
+ * The playouts are split into batches of BATCH games that run on all
+ * cores. Every batch has its own random generator, split from one seeded
+ * generator, its own sessions and its own counts, which are added up at
+ * the end, so a run with the same seed gives the same statistics however
+ * many cores play it.
+ *
+ * Run with: java PlayoutRunner [--games n] [--turns n] [--seed n] [--greedy] [--world file]
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class PlayoutRunner
+{
+    private static final int BATCH = 256;       // Games that share one random generator
+    private static final int ROWS = 10;         // Rooms and items listed in each part of the report
+
+    private World world;                // The world being played
+    private int maxTurns;               // Turns after which a game counts as unfinished
+    private boolean greedy;             // Whether the players are greedy rather than random
+    private int[] nameOf;               // A number for the name of each item, shared by items of the same name
+    private boolean[] required;         // Whether the items of each name number are needed to win
+    private Routes.Tree toGoal;         // The routes to the goal room, for greedy players
+
+    /**
+     * Play a world many times and print the statistics.
+     *
+     * @param args Options, see the class comment.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int games = 100000;
+        int turns = 1000;
+        long seed = 0;
+        boolean greedy = false;
+        World world = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--games")) {
+                games = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--turns")) {
+                turns = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            }
+            else if (args[i].equals("--greedy")) {
+                greedy = true;
+            }
+            else if (args[i].equals("--world")) {
+                world = World.open(Paths.get(args[++i]));
+            }
+            else {
+                System.err.println("Usage: java PlayoutRunner [--games n] [--turns n] [--seed n] [--greedy] [--world file]");
+                System.exit(2);
+            }
+        }
+        if (world == null) {
+            world = World.stock();
+        }
+
+        PlayoutRunner runner = new PlayoutRunner(world, turns, greedy);
+        long start = System.nanoTime();
+        Statistics statistics = runner.play(games, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d games by %s players, %d turns in %.3f s: %.0f turns/sec, %.0f per core%n",
+            statistics.getGames(), greedy ? "greedy" : "random", statistics.getTurns(), seconds,
+            statistics.getTurns() / seconds, statistics.getTurns() / seconds / cores);
+        runner.report(statistics);
+    }
+
+    /**
+     * Create a runner.
+     *
+     * @param world The world to play.
+     * @param maxTurns Turns after which a game counts as unfinished.
+     * @param greedy true for greedy players, false for random ones.
+     */
+    public PlayoutRunner(World world, int maxTurns, boolean greedy)
+    {
+        this.world = world;
+        this.maxTurns = maxTurns;
+        this.greedy = greedy;
+        WinCondition condition = world.getWinCondition();
+        Map<String, Integer> numbers = new HashMap<>();
+        nameOf = new int[world.getItemCount()];
+        for (int i = 0; i < nameOf.length; i++) {
+            nameOf[i] = numbers.computeIfAbsent(ItemKey.of(world.getItem(i).getName()), key -> numbers.size());
+        }
+        required = new boolean[numbers.size()];
+        for (Map.Entry<String, Integer> name : numbers.entrySet()) {
+            required[name.getValue()] = condition.getBit(name.getKey()) >= 0;
+        }
+        toGoal = world.getRoutes().getRoutesTo(world.getGoalRoom());
+    }
+
+    /**
+     * Play many games in parallel.
+     *
+     * @param games The number of games.
+     * @param seed The seed of all random choices and events.
+     * @return The statistics of the games.
+     */
+    public Statistics play(int games, long seed)
+    {
+        int batches = (games + BATCH - 1) / BATCH;
+        SplittableRandom random = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[batches];
+        for (int b = 0; b < batches; b++) {
+            streams[b] = random.split();
+        }
+        return IntStream.range(0, batches).parallel().collect(
+            () -> new Statistics(world, maxTurns),
+            (statistics, b) -> playBatch(statistics, streams[b], Math.min(BATCH, games - b * BATCH)),
+            Statistics::add);
+    }
+
+    /**
+     * Play the games of one batch.
+     *
+     * @param statistics Where the batch counts its games.
+     * @param random The batch's random generator.
+     * @param games The number of games.
+     */
+    private void playBatch(Statistics statistics, SplittableRandom random, int games)
+    {
+        GameEngine template = new GameEngine(world);
+        template.setOutput(turn -> { });
+        Command[] moves = new Command[Direction.values().length];
+        for (Direction direction : Direction.values()) {
+            moves[direction.ordinal()] = new Command(CommandWord.GO, direction.toString(), null);
+        }
+        Map<String, Command> takes = new HashMap<>();
+        for (int g = 0; g < games; g++) {
+            playGame(statistics, template.fork(), random, moves, takes);
+        }
+    }
+
+    /**
+     * Play one game until it is won or runs out of turns.
+     */
+    private void playGame(Statistics statistics, GameEngine game, SplittableRandom random,
+                          Command[] moves, Map<String, Command> takes)
+    {
+        game.setRandomSeed(random.nextLong());
+        Player player = game.getPlayer();
+        QuestProgress progress = game.getProgress();
+        boolean[] held = new boolean[required.length];
+        int room = game.getCurrentRoom().getId();
+        int previous = -1;
+        statistics.visits[room]++;
+        for (int turn = 1; turn <= maxTurns; turn++) {
+            Item item = chooseItem(room, player, held, random);
+            TurnResult result;
+            if (item != null) {
+                int weight = player.getCurrentWeight();
+                result = game.step(takes.computeIfAbsent(item.getName(), name -> new Command(CommandWord.TAKE, name, null)));
+                if (player.getCurrentWeight() != weight) {
+                    held[nameOf[item.getId()]] = true;
+                    statistics.pickups[item.getId()]++;
+                }
+            }
+            else {
+                int exit = chooseExit(room, previous, progress.isComplete(0), random);
+                Direction direction = exit < 0 ? Direction.NORTH : world.getExitDirection(exit);
+                result = game.step(moves[direction.ordinal()]);
+            }
+            int now = game.getCurrentRoom().getId();
+            if (now != room) {
+                statistics.visits[now]++;
+                previous = room;
+                room = now;
+            }
+            if (result.isWon()) {
+                statistics.turns += turn;
+                statistics.turnsToWin[turn]++;
+                statistics.wins++;
+                statistics.games++;
+                return;
+            }
+        }
+        statistics.turns += maxTurns;
+        statistics.stuck[room]++;
+        statistics.games++;
+    }
+
+    /**
+     * @return An item in the room for the player to take, or null to move on.
+     * The players never drop what they take, so the items that started in
+     * the room and whose names the player does not hold are still there.
+     */
+    private Item chooseItem(int room, Player player, boolean[] held, SplittableRandom random)
+    {
+        if (!greedy && random.nextBoolean()) {
+            return null;
+        }
+        Item chosen = null;
+        int seen = 0;
+        for (int i = world.getFirstItem(room); i < world.getFirstItem(room + 1); i++) {
+            if (held[nameOf[i]] || greedy && !required[nameOf[i]]) {
+                continue;
+            }
+            Item item = world.getItem(i);
+            if (item.isPickable() && player.canCarry(item)) {
+                // Pick one of the items seen with equal chances
+                seen++;
+                if (random.nextInt(seen) == 0) {
+                    chosen = item;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * @return The exit for the player to take, or -1 if the room has none.
+     */
+    private int chooseExit(int room, int previous, boolean complete, SplittableRandom random)
+    {
+        int first = world.getFirstExit(room);
+        int exits = world.getFirstExit(room + 1) - first;
+        if (exits == 0) {
+            return -1;
+        }
+        if (greedy && complete && toGoal.getNextStep(room) != null) {
+            return exitTowards(room, toGoal.getNextRoom(room));
+        }
+        int exit = first + random.nextInt(exits);
+        if (greedy && exits > 1 && world.getExitTarget(exit) == previous) {
+            // Any other exit, with equal chances
+            exit = first + (exit - first + 1 + random.nextInt(exits - 1)) % exits;
+        }
+        return exit;
+    }
+
+    /**
+     * @return The exit of a room that leads to another room, or -1.
+     */
+    private int exitTowards(int room, int target)
+    {
+        for (int e = world.getFirstExit(room); e < world.getFirstExit(room + 1); e++) {
+            if (world.getExitTarget(e) == target) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Print the statistics of a run.
+     *
+     * @param statistics The statistics.
+     */
+    public void report(Statistics statistics)
+    {
+        long games = statistics.getGames();
+        long wins = statistics.getWins();
+        System.out.printf("Won: %d (%.1f%%), unfinished after %d turns: %d%n",
+            wins, 100.0 * wins / Math.max(1, games), maxTurns, games - wins);
+        if (wins > 0) {
+            System.out.printf("Turns to win: min %d, 10%% %d, median %d, mean %.1f, 90%% %d, max %d%n",
+                statistics.getTurnsToWin(0), statistics.getTurnsToWin(0.1), statistics.getTurnsToWin(0.5),
+                statistics.getMeanTurnsToWin(), statistics.getTurnsToWin(0.9), statistics.getTurnsToWin(1));
+        }
+
+        int rooms = world.getRoomCount();
+        Integer[] byVisits = sorted(rooms, room -> statistics.getVisits(room));
+        System.out.println("\nMost visited rooms (visits per game):");
+        for (int i = 0; i < Math.min(ROWS, rooms); i++) {
+            printRoom(byVisits[i], statistics.getVisits(byVisits[i]) / (double) games);
+        }
+        System.out.println("\nLeast visited rooms (visits per game):");
+        for (int i = Math.max(ROWS, rooms - ROWS); i < rooms; i++) {
+            printRoom(byVisits[i], statistics.getVisits(byVisits[i]) / (double) games);
+        }
+
+        int items = world.getItemCount();
+        Integer[] byPickups = sorted(items, item -> statistics.getPickups(item));
+        System.out.println("\nMost picked up items (share of games):");
+        for (int i = 0; i < Math.min(ROWS, items) && statistics.getPickups(byPickups[i]) > 0; i++) {
+            Item item = world.getItem(byPickups[i]);
+            System.out.printf("  %-34s %8.3f%n", item.getName() + " in the " + world.getRoomName(world.getItemRoom(item.getId())),
+                statistics.getPickups(byPickups[i]) / (double) games);
+        }
+
+        Integer[] byStuck = sorted(rooms, room -> statistics.getStuck(room));
+        System.out.println("\nWhere unfinished games ended (share of games; ! marks rooms the goal cannot be reached from):");
+        for (int i = 0; i < Math.min(ROWS, rooms) && statistics.getStuck(byStuck[i]) > 0; i++) {
+            printRoom(byStuck[i], statistics.getStuck(byStuck[i]) / (double) games);
+        }
+    }
+
+    /**
+     * Print one line about a room.
+     */
+    private void printRoom(int room, double share)
+    {
+        System.out.printf("  %-34s %8.3f%s%n", world.getRoomName(room), share, toGoal.canReach(room) ? "" : " !");
+    }
+
+    /**
+     * @return The numbers from 0 to a count, sorted by a count, highest first.
+     */
+    private static Integer[] sorted(int count, IntToLongFunction counts)
+    {
+        Integer[] numbers = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = i;
+        }
+        Arrays.sort(numbers, (a, b) -> Long.compare(counts.applyAsLong(b), counts.applyAsLong(a)));
+        return numbers;
+    }
+
+    /**
+     * The counts of a number of games. Every batch counts into its own
+     * statistics, which are added up when the batches are done.
+     */
+    public static class Statistics
+    {
+        private long games;             // The number of games played
+        private long wins;              // The number of games won
+        private long turns;             // The number of turns played in all games
+        private long[] turnsToWin;      // The number of games won in each number of turns
+        private long[] visits;          // The number of times each room was entered
+        private long[] pickups;         // The number of times each item was picked up
+        private long[] stuck;           // The number of unfinished games that ended in each room
+
+        /**
+         * Create empty statistics.
+         *
+         * @param world The world being played.
+         * @param maxTurns Turns after which a game counts as unfinished.
+         */
+        public Statistics(World world, int maxTurns)
+        {
+            turnsToWin = new long[maxTurns + 1];
+            visits = new long[world.getRoomCount()];
+            pickups = new long[world.getItemCount()];
+            stuck = new long[world.getRoomCount()];
+        }
+
+        /**
+         * Add the counts of other statistics to these.
+         *
+         * @param other The other statistics.
+         */
+        public void add(Statistics other)
+        {
+            games += other.games;
+            wins += other.wins;
+            turns += other.turns;
+            addCounts(turnsToWin, other.turnsToWin);
+            addCounts(visits, other.visits);
+            addCounts(pickups, other.pickups);
+            addCounts(stuck, other.stuck);
+        }
+
+        /**
+         * Add counts to others.
+         */
+        private static void addCounts(long[] counts, long[] more)
+        {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += more[i];
+            }
+        }
+
+        /**
+         * @return The number of games played.
+         */
+        public long getGames()
+        {
+            return games;
+        }
+
+        /**
+         * @return The number of games won.
+         */
+        public long getWins()
+        {
+            return wins;
+        }
+
+        /**
+         * @return The number of turns played in all games.
+         */
+        public long getTurns()
+        {
+            return turns;
+        }
+
+        /**
+         * @param share A share of the games won, from 0 to 1.
+         * @return The fewest turns within which that share of the games were won.
+         */
+        public int getTurnsToWin(double share)
+        {
+            long needed = Math.max(1, (long) Math.ceil(share * wins));
+            long counted = 0;
+            for (int turn = 0; turn < turnsToWin.length; turn++) {
+                counted += turnsToWin[turn];
+                if (counted >= needed) {
+                    return turn;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return The average number of turns of the games won.
+         */
+        public double getMeanTurnsToWin()
+        {
+            long total = 0;
+            for (int turn = 0; turn < turnsToWin.length; turn++) {
+                total += turn * turnsToWin[turn];
+            }
+            return wins == 0 ? 0 : total / (double) wins;
+        }
+
+        /**
+         * @param room The number of a room.
+         * @return The number of times the room was entered, counting the start of every game.
+         */
+        public long getVisits(int room)
+        {
+            return visits[room];
+        }
+
+        /**
+         * @param item The number of an item.
+         * @return The number of times the item was picked up.
+         */
+        public long getPickups(int item)
+        {
+            return pickups[item];
+        }
+
+        /**
+         * @param room The number of a room.
+         * @return The number of unfinished games that ended in the room.
+         */
+        public long getStuck(int room)
+        {
+            return stuck[room];
+        }
+    }
+}
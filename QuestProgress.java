@@ -0,0 +1,130 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps a running count, for each active goal, of how many of the goal's
+ * required items a player carries.
+ *
+ * The tracker listens to the player's inventory, so the counts are brought
+ * up to date as items are taken, dropped and given away instead of being
+ * worked out from the inventory when they are needed. Asking how close
+ * the player is to a goal costs the same however many items it requires.
+ * The counts may be read from any thread, for example by a server
+ * dashboard, while the session plays.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public final class QuestProgress implements InventoryListener
+{
+    private WinCondition[] goals;           // The active goals
+    private AtomicIntegerArray held;        // The number of required items carried, per goal
+
+    /**
+     * Start tracking a player's progress towards some goals.
+     *
+     * @param player The player.
+     * @param goals The active goals.
+     */
+    public QuestProgress(Player player, WinCondition... goals)
+    {
+        this.goals = goals.clone();
+        held = new AtomicIntegerArray(goals.length);
+        for (Item item : player.getInventory()) {
+            count(item, 1);
+        }
+        player.addInventoryListener(this);
+    }
+
+    /**
+     * Copy this progress for a copy of the player, without counting the
+     * player's inventory again.
+     *
+     * @param player The copy of the player.
+     * @return The progress of the copy, which it keeps up to date.
+     */
+    public QuestProgress fork(Player player)
+    {
+        int[] counts = new int[goals.length];
+        for (int g = 0; g < goals.length; g++) {
+            counts[g] = held.get(g);
+        }
+        QuestProgress copy = new QuestProgress(goals, new AtomicIntegerArray(counts));
+        player.addInventoryListener(copy);
+        return copy;
+    }
+
+    /**
+     * Create progress with counts that are already known.
+     */
+    private QuestProgress(WinCondition[] goals, AtomicIntegerArray held)
+    {
+        this.goals = goals;
+        this.held = held;
+    }
+
+    /**
+     * @param item An item the player picked up.
+     */
+    public void itemAdded(Item item)
+    {
+        count(item, 1);
+    }
+
+    /**
+     * @param item An item the player no longer carries.
+     */
+    public void itemRemoved(Item item)
+    {
+        count(item, -1);
+    }
+
+    /**
+     * Change the counts of the goals that require an item.
+     *
+     * @param item The item.
+     * @param change 1 when the player picked the item up, -1 when it is gone.
+     */
+    private void count(Item item, int change)
+    {
+        for (int g = 0; g < goals.length; g++) {
+            if (goals[g].getBit(item) >= 0) {
+                held.addAndGet(g, change);
+            }
+        }
+    }
+
+    /**
+     * @return The number of active goals.
+     */
+    public int getGoalCount()
+    {
+        return goals.length;
+    }
+
+    /**
+     * @param goal The number of a goal.
+     * @return The number of the goal's required items the player carries.
+     */
+    public int getHeld(int goal)
+    {
+        return held.get(goal);
+    }
+
+    /**
+     * @param goal The number of a goal.
+     * @return The number of items the goal requires.
+     */
+    public int getRequired(int goal)
+    {
+        return goals[goal].size();
+    }
+
+    /**
+     * @param goal The number of a goal.
+     * @return true if the player carries every item the goal requires.
+     */
+    public boolean isComplete(int goal)
+    {
+        return held.get(goal) == goals[goal].size();
+    }
+}
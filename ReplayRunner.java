@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Replays recorded command transcripts at full speed, without a terminal.
+ *
+ * A transcript is a text file with one command per line. Each transcript is
+ * played in its own GameEngine through the normal Parser and command
+ * handling, and the transcripts are spread over all cores. The text the
+ * game produces is either hashed, so that two runs can be compared, or
+ * discarded.
+ *
+ * For every transcript the runner reports its outcome (won, quit or still
+ * running when the transcript ended), the number of turns played, how many
+ * lines were left over when the game ended early, and the output hash. A
+ * summary with the overall turns per second follows.
+ *
+ * Run with: java ReplayRunner [--discard] [--seed n] [--world file] file-or-directory...
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class ReplayRunner
+{
+    private boolean hashOutput;     // Whether the output of each turn is hashed
+    private long seed;              // Seed for the random events of every game
+    private World world;            // The world every transcript is played on
+
+    /**
+     * Replay the transcripts named on the command line. Directories are
+     * searched for transcript files.
+     *
+     * @param args Options followed by transcript files or directories.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        boolean hashOutput = true;
+        long seed = 0;
+        World world = null;
+        List<Path> transcripts = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--discard")) {
+                hashOutput = false;
+            }
+            else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            }
+            else if (args[i].equals("--world")) {
+                world = World.open(Paths.get(args[++i]));
+            }
+            else {
+                addTranscripts(Paths.get(args[i]), transcripts);
+            }
+        }
+        if (transcripts.isEmpty()) {
+            System.err.println("Usage: java ReplayRunner [--discard] [--seed n] [--world file] file-or-directory...");
+            System.exit(2);
+        }
+
+        ReplayRunner runner = new ReplayRunner(world != null ? world : World.stock(), hashOutput, seed);
+        long start = System.nanoTime();
+        List<Replay> replays = runner.replayAll(transcripts);
+        long elapsed = System.nanoTime() - start;
+
+        long turns = 0;
+        int won = 0;
+        int quit = 0;
+        for (Replay replay : replays) {
+            System.out.println(replay);
+            turns += replay.getTurns();
+            if (replay.getOutcome() == Outcome.WON) won++;
+            if (replay.getOutcome() == Outcome.QUIT) quit++;
+        }
+        double seconds = elapsed / 1e9;
+        System.out.printf("%d transcripts (%d won, %d quit, %d unfinished), %d turns in %.3f s, %.0f turns/sec%n",
+            replays.size(), won, quit, replays.size() - won - quit, turns, seconds, turns / seconds);
+    }
+
+    /**
+     * Add a transcript file, or all regular files below a directory.
+     *
+     * @param path A transcript file or a directory of transcripts.
+     * @param transcripts The list to add to.
+     */
+    private static void addTranscripts(Path path, List<Path> transcripts) throws IOException
+    {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile).sorted().forEach(transcripts::add);
+            }
+        }
+        else {
+            transcripts.add(path);
+        }
+    }
+
+    /**
+     * Create a replay runner.
+     *
+     * @param world The world every transcript is played on.
+     * @param hashOutput true to hash the output of each game, false to discard it.
+     * @param seed The seed for the random events of every game.
+     */
+    public ReplayRunner(World world, boolean hashOutput, long seed)
+    {
+        this.world = world;
+        this.hashOutput = hashOutput;
+        this.seed = seed;
+    }
+
+    /**
+     * Replay many transcripts in parallel.
+     *
+     * @param transcripts The transcript files.
+     * @return The replays, in the order of the transcripts.
+     */
+    public List<Replay> replayAll(List<Path> transcripts)
+    {
+        return transcripts.parallelStream().map(this::replay).toList();
+    }
+
+    /**
+     * Replay one transcript file.
+     *
+     * @param transcript The transcript file.
+     * @return The result of the replay.
+     */
+    public Replay replay(Path transcript)
+    {
+        try {
+            return replay(transcript.toString(), Files.readAllLines(transcript, StandardCharsets.UTF_8));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replay a list of command lines in a new game.
+     *
+     * @param name The name of the transcript, for the report.
+     * @param lines The commands, one per line.
+     * @return The result of the replay.
+     */
+    public Replay replay(String name, List<String> lines)
+    {
+        Parser parser = new Parser();
+        GameEngine engine = new GameEngine(world);
+        engine.setRandomSeed(seed);
+        Command command = new Command();
+        MemoryOutput output = new MemoryOutput();
+        engine.setOutput(hashOutput ? output : turn -> { });
+
+        TurnResult result = engine.start();
+        int turns = 0;
+        for (String line : lines) {
+            if (result.isGameOver()) {
+                break;
+            }
+            result = engine.step(parser.parse(line, command));
+            turns++;
+        }
+
+        Outcome outcome = result.isWon() ? Outcome.WON : result.isQuit() ? Outcome.QUIT : Outcome.UNFINISHED;
+        return new Replay(name, outcome, turns, lines.size() - turns, hashOutput ? output.getHash() : 0);
+    }
+
+    /**
+     * How a replayed game ended.
+     */
+    public enum Outcome
+    {
+        WON, QUIT, UNFINISHED
+    }
+
+    /**
+     * The result of replaying one transcript.
+     */
+    public static class Replay
+    {
+        private String name;        // The transcript's name
+        private Outcome outcome;    // How the game ended
+        private int turns;          // The number of turns played
+        private int remaining;      // Lines left over after the game ended
+        private long hash;          // CRC32 of the game's output, 0 if discarded
+
+        /**
+         * Create the result of a replay.
+         *
+         * @param name The transcript's name.
+         * @param outcome How the game ended.
+         * @param turns The number of turns played.
+         * @param remaining Lines left over after the game ended.
+         * @param hash CRC32 of the game's output.
+         */
+        public Replay(String name, Outcome outcome, int turns, int remaining, long hash)
+        {
+            this.name = name;
+            this.outcome = outcome;
+            this.turns = turns;
+            this.remaining = remaining;
+            this.hash = hash;
+        }
+
+        /**
+         * @return How the game ended.
+         */
+        public Outcome getOutcome()
+        {
+            return outcome;
+        }
+
+        /**
+         * @return The number of turns played.
+         */
+        public int getTurns()
+        {
+            return turns;
+        }
+
+        /**
+         * @return The number of lines left over after the game ended.
+         */
+        public int getRemaining()
+        {
+            return remaining;
+        }
+
+        /**
+         * @return CRC32 of the game's output, 0 if the output was discarded.
+         */
+        public long getHash()
+        {
+            return hash;
+        }
+
+        /**
+         * @return One line describing the replay.
+         */
+        public String toString()
+        {
+            return String.format("%s  %s  turns=%d  remaining=%d  hash=%08x", name, outcome, turns, remaining, hash);
+        }
+    }
+}
@@ -1,44 +1,74 @@
-import java.util.Set;
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * The "Room" represents one location in the scenery of the game.  It is 
- * connected to other rooms via exits.  For each existing exit, the room 
- * stores a reference to the neighboring room.
+ * connected to other rooms via exits.
  * 
- * Each room has a name, a description, and exits, There is also methods to manage the 
- * items and charcters in the room
+ * A room is a view of one room of the World: its name, description and
+ * exits are read from the world, which is shared by every session, and
+ * the room is known by its number there. The items in the room are the
+ * items the world puts there that have not moved, followed by the items
+ * the session's ItemPlacements have moved in, and the characters and
+ * the player in it are those the session's RoomOccupancy puts there. A room
+ * therefore only caches what it can read again.
+ * 
+ * The text shown when the player arrives is rendered once, kept as UTF-8
+ * bytes and only rendered again after the room's items change. While a
+ * room holds just the items the world puts in it, its text is shared
+ * through the world by every session.
  * 
  * @author  Michael Kölling and David J. Barnes
  * @author Jawhara Jannah
- * @version 2.0
+ * @version 3.0
  */
 
 public class Room 
 {
-    private String description;                 // The description of the room                
-    private String name;                        // The name of the room
-    private HashMap<String, Room> exits;        // Stores exits of this room.
-    private HashMap<String, Item> items;        // Stores items
-    private Character character;                // A charcter in the room
-    private Set<Character> characters;          // A set of all characters in the room
+    private World world;                        // The world the room belongs to
+    private int id;                             // The number of the room in the world
+    private String name;                        // The name of the room, read from the world when first needed
+    private String description;                 // The description of the room, read from the world when first needed
+    private ItemPlacements placements;          // Where the session's items are
+    private byte[] render;                      // The text shown on arrival in UTF-8, null when it must be rendered again
+    private RoomOccupancy occupancy;            // Who is in the session's rooms
     
     /**
-     * Creates a room described "description". 
+     * Creates a view of a room of a world, holding the items the world
+     * puts in it.
      * 
-     * @param name The name of the room
-     * @param description The room's description.
+     * @param world The world the room belongs to
+     * @param id The number of the room in the world
      */
-    public Room(String name, String description) 
+    public Room(World world, int id) 
     {
-        this.name = name;
-        this.description = description;
-        this.exits = new HashMap<>();
-        this.items = new HashMap<>();
-
+        this(world, id, new ItemPlacements(world), new RoomOccupancy());
+    }
+    
+    /**
+     * Creates a view of a room of a world for a RoomTable.
+     * 
+     * @param world The world the room belongs to
+     * @param id The number of the room in the world
+     * @param placements Where the session's items are
+     * @param occupancy Who is in the session's rooms
+     */
+    Room(World world, int id, ItemPlacements placements, RoomOccupancy occupancy) 
+    {
+        this.world = world;
+        this.id = id;
+        this.placements = placements;
+        this.occupancy = occupancy;
+    }
+    
+    /**
+     * @return The number of the room in its world
+     */
+    public int getId()
+    {
+        return id;
     }
     
     /**
@@ -46,6 +76,9 @@ public class Room
      */
     public String getName()
     {
+        if (name == null) {
+            name = world.getRoomName(id);
+        }
         return name;
     }
     
@@ -54,6 +87,9 @@ public class Room
      */
     public String getShortDescription()
     {
+        if (description == null) {
+            description = world.getRoomDescription(id);
+        }
         return description;
     }
     
@@ -64,30 +100,48 @@ public class Room
      */
     public String getLongDescription()
     {
-        return this.description + ".\n" + getItemDescriptions();
+        return getShortDescription() + ".\n" + getItemDescriptions();
     }
     
     /**
-     * Define an exit from this room.
+     * Return the room that is reached if we go from this room in direction
+     * "direction".
      * 
-     * @param direction The direction of the exit.
-     * @param neighbor  The room to which the exit leads.
+     * @param direction The exit's direction.
+     * @return The number of the room in the given direction, or -1 if there is none.
      */
-    public void setExit(String direction, Room neighbor) 
+    public int getExit(Direction direction)
     {
-        exits.put(direction, neighbor);
+        return world.getExit(id, direction);
     }
 
     /**
-     * Return the room that is reached if we go from this room in direction
-     * "direction". If there is no room in that direction, return null.
+     * Return the text shown when the player arrives in the room: its long
+     * description followed by its exits, for example
+     * "\nYou are in a cave.\n...\nExits: north west ". The text is
+     * rendered when first needed and again only after the items change.
      * 
-     * @param direction The exit's direction.
-     * @return The room in the given direction.
+     * @return The text as UTF-8 bytes, which must not be changed.
      */
-    public Room getExit(String direction) {
-        String normalizedDirection = direction.toLowerCase();
-        return exits.get(normalizedDirection);
+    public byte[] getRender()
+    {
+        if (render != null) {
+            return render;
+        }
+        // A room whose items have not moved looks the same in every session
+        AtomicReferenceArray<byte[]> shared = placements.isUntouched(id) ? world.getRenders() : null;
+        render = shared == null ? null : shared.get(id);
+        if (render == null) {
+            StringBuilder text = new StringBuilder("\nYou are ").append(getLongDescription()).append("\nExits: ");
+            for (int e = world.getFirstExit(id); e < world.getFirstExit(id + 1); e++) {
+                text.append(world.getExitDirection(e)).append(' ');
+            }
+            render = text.toString().getBytes(StandardCharsets.UTF_8);
+            if (shared != null) {
+                shared.set(id, render);
+            }
+        }
+        return render;
     }
 
     /**
@@ -96,58 +150,88 @@ public class Room
      * 
      * @return Details of the room's exits.
      */
-    private String getExitString()
+    public String getExitString()
     {
-        String returnString = "Exits:";
-        Set<String> keys = exits.keySet();
-        for(String exit : keys) {
-            returnString += " " + exit;
+        StringBuilder returnString = new StringBuilder("Exits:");
+        for (int e = world.getFirstExit(id); e < world.getFirstExit(id + 1); e++) {
+            returnString.append(' ').append(world.getExitDirection(e));
         }
-        return returnString;
+        return returnString.toString();
     }
     
     /**
      * Add an item to the room
      * 
-     * @param itemName The name of the item to add.
+     * @param item The item to add.
      */
     public void addItem(Item item) 
     {
-        items.put(item.getName().toLowerCase(), item);
+        placements.moveTo(item, id);
+        render = null;
     }
 
     /**
      * Remove an item from the room
      * 
      * @param itemName The name of the item to remove.
+     * @return The item removed, or null if there is no such item in the room
      */
     public Item removeItem(String itemName) 
     {
-        return items.remove(itemName.toLowerCase());
+        Item item = getItem(itemName);
+        if (item != null) {
+            placements.moveTo(item, ItemPlacements.NOWHERE);
+            render = null;
+        }
+        return item;
+    }
+
+    /**
+     * Remove a particular item from the room, if it is there
+     * 
+     * @param item The item to remove.
+     * @return true if the item was in the room
+     */
+    public boolean removeItem(Item item) 
+    {
+        if (placements.getRoom(item.getId()) != id) {
+            return false;
+        }
+        placements.moveTo(item, ItemPlacements.NOWHERE);
+        render = null;
+        return true;
     }
    
     /**
-     * Get an item from the room
+     * Get an item from the room, ignoring the case of its name. Items
+     * are found in constant time however many the room holds.
      * 
      * @param itemName The name of the item to get
      * @return The item if found, or null if not found
      */
     public Item getItem(String itemName) {
-        for (Item item : items.values()) {
-            if (item.getName().equalsIgnoreCase(itemName)) { 
-                return item;
+        for (int i = world.findItem(id, itemName); i >= 0; i = world.getNextItemNamed(i)) {
+            if (placements.isHome(i, id)) {
+                return world.getItem(i);
             }
         }
-        return null; 
+        return placements.findArrival(id, itemName);
     }
        
     /**
      *  Get all items in the room
      *  
-     *  @return A map of items in the room
+     *  @return A new list of the items in the room
      */
-    public HashMap<String, Item> getItems() 
+    public List<Item> getItems() 
     {
+        List<Item> items = new ArrayList<>();
+        for (int i = world.getFirstItem(id); i < world.getFirstItem(id + 1); i++) {
+            if (placements.isHome(i, id)) {
+                items.add(world.getItem(i));
+            }
+        }
+        items.addAll(placements.getArrivals(id));
         return items; 
     }
     
@@ -158,52 +242,23 @@ public class Room
      * @return A description of the room's items 
      */
     public String getItemDescriptions() {
+        List<Item> items = getItems();
         if (items.isEmpty()) {
             return "\nThis room is empty.\n";
         }
         StringBuilder descriptions = new StringBuilder("\nItems\n");
-        for (Item item : items.values()) {
+        for (Item item : items) {
             descriptions.append("- ").append(item.getName()).append(": ").append(item.getDescription()).append("\n");
         }
         return descriptions.toString();
     }
 
     /**
-     * Set a character in the room.
-     * 
-     * @param character The charcter to set
+     * @return A snapshot of the characters and players in the room, in the
+     * order they came in.
      */
-    public void setCharacter(Character character) 
+    public List<Occupant> getOccupants()
     {
-        this.character = character;
-    }
-    
-    /**
-     * Add a character in the room.
-     * 
-     * @param character The charcter to be added
-     */
-    public void addCharacter(Character character) {
-        characters.add(character);
-    }
-    
-    /**
-     * Get the character in the room.
-     * 
-     * @param character The character to remove
-     */
-    public Character getCharacter() {
-        return character;
+        return occupancy.getOccupants(id);
     }
-
-    /**
-     * Get all rooms that are connected to the room via exits.
-     * 
-     * @return A list of all connecting rooms.
-     */
-    public ArrayList<Room> getAllExits() 
-    {
-        return new ArrayList<>(exits.values()); 
-    }   
 }
-
@@ -0,0 +1,281 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Who is in which room: the characters and the player of one game session,
+ * indexed both by room and by occupant. Every session has its own
+ * occupancy, so the players of other sessions are never in it.
+ *
+ * Every occupant gets a slot when it first enters a room. The occupants
+ * of a room are linked through their slots into a ring in the order they
+ * came in, and a small open-addressing table holds the first slot of each
+ * occupied room only. Entering and leaving a room and asking whether
+ * someone is in a room therefore take constant time, however many rooms
+ * and occupants there are. They allocate nothing once the occupant has
+ * its slot: only giving an occupant its slot boxes the slot's number.
+ *
+ * Occupants are normally moved by the thread of their session, but the
+ * occupancy may be read from any thread while they move: every method
+ * holds the occupancy's lock for a few steps only, and getOccupants()
+ * returns a snapshot that later moves do not change.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class RoomOccupancy
+{
+    private IdentityHashMap<Occupant, Integer> slots;   // The slot of each occupant
+    private Occupant[] occupants;                       // The occupant in each slot
+    private int[] roomOf;                               // The room of the occupant in each slot, or -1
+    private int[] next;                                 // The next slot in the same room, in order of arrival
+    private int[] previous;                             // The previous slot in the same room; the first links to the last
+    private int[] roomKeys;                             // Room number + 1 of each occupied room, 0 in free slots
+    private int[] firstSlots;                           // The first slot in each occupied room
+    private int occupiedRooms;                          // The number of occupied rooms
+
+    /**
+     * Create an occupancy with every room empty.
+     */
+    public RoomOccupancy()
+    {
+        slots = new IdentityHashMap<>();
+        occupants = new Occupant[4];
+        roomOf = new int[4];
+        next = new int[4];
+        previous = new int[4];
+        roomKeys = new int[8];
+        firstSlots = new int[8];
+        occupiedRooms = 0;
+    }
+
+    /**
+     * Move an occupant into a room, out of the room it was in.
+     *
+     * @param occupant The occupant.
+     * @param room The number of the room.
+     */
+    public void enter(Occupant occupant, int room)
+    {
+        enter(register(occupant), room);
+    }
+
+    /**
+     * Move the occupant in a slot into a room, out of the room it was in.
+     * This saves looking up the slot of an occupant that moves every tick.
+     *
+     * @param slot The slot given by register().
+     * @param room The number of the room.
+     */
+    synchronized void enter(int slot, int room)
+    {
+        if (roomOf[slot] == room) {
+            return;
+        }
+        if (roomOf[slot] >= 0) {
+            unlink(slot);
+        }
+        link(slot, room);
+    }
+
+    /**
+     * Take an occupant out of the room it is in.
+     *
+     * @param occupant The occupant.
+     */
+    public synchronized void leave(Occupant occupant)
+    {
+        Integer slot = slots.get(occupant);
+        if (slot != null && roomOf[slot] >= 0) {
+            unlink(slot);
+        }
+    }
+
+    /**
+     * @param occupant An occupant.
+     * @return The number of the room the occupant is in, or -1 if it is in none.
+     */
+    public synchronized int getRoom(Occupant occupant)
+    {
+        Integer slot = slots.get(occupant);
+        return slot == null ? -1 : roomOf[slot];
+    }
+
+    /**
+     * @param occupant An occupant.
+     * @param room The number of a room.
+     * @return true if the occupant is in the room.
+     */
+    public boolean isIn(Occupant occupant, int room)
+    {
+        return room >= 0 && getRoom(occupant) == room;
+    }
+
+    /**
+     * @param room The number of a room.
+     * @return A snapshot of the occupants of the room, in the order they came in.
+     */
+    public synchronized List<Occupant> getOccupants(int room)
+    {
+        int first = findFirst(room);
+        if (first < 0) {
+            return Collections.emptyList();
+        }
+        List<Occupant> present = new ArrayList<>();
+        int slot = first;
+        do {
+            present.add(occupants[slot]);
+            slot = next[slot];
+        } while (slot != first);
+        return present;
+    }
+
+    /**
+     * @return The number of rooms someone is in.
+     */
+    public synchronized int getOccupiedRoomCount()
+    {
+        return occupiedRooms;
+    }
+
+    /**
+     * @param occupant An occupant.
+     * @return The slot of the occupant, given to it now if it has none.
+     */
+    synchronized int register(Occupant occupant)
+    {
+        Integer slot = slots.get(occupant);
+        if (slot != null) {
+            return slot;
+        }
+        int count = slots.size();
+        if (count == occupants.length) {
+            occupants = Arrays.copyOf(occupants, count * 2);
+            roomOf = Arrays.copyOf(roomOf, count * 2);
+            next = Arrays.copyOf(next, count * 2);
+            previous = Arrays.copyOf(previous, count * 2);
+        }
+        occupants[count] = occupant;
+        roomOf[count] = -1;
+        slots.put(occupant, count);
+        return count;
+    }
+
+    /**
+     * Add a slot at the end of the ring of a room.
+     */
+    private void link(int slot, int room)
+    {
+        roomOf[slot] = room;
+        int key = findKey(room);
+        if (roomKeys[key] == 0) {
+            next[slot] = slot;
+            previous[slot] = slot;
+            roomKeys[key] = room + 1;
+            firstSlots[key] = slot;
+            occupiedRooms++;
+            if (occupiedRooms * 2 > roomKeys.length) {
+                resize(roomKeys.length * 2);
+            }
+        }
+        else {
+            int first = firstSlots[key];
+            int last = previous[first];
+            next[last] = slot;
+            previous[slot] = last;
+            next[slot] = first;
+            previous[first] = slot;
+        }
+    }
+
+    /**
+     * Remove a slot from the ring of its room.
+     */
+    private void unlink(int slot)
+    {
+        int key = findKey(roomOf[slot]);
+        if (next[slot] == slot) {
+            removeKey(key);
+        }
+        else {
+            next[previous[slot]] = next[slot];
+            previous[next[slot]] = previous[slot];
+            if (firstSlots[key] == slot) {
+                firstSlots[key] = next[slot];
+            }
+        }
+        roomOf[slot] = -1;
+    }
+
+    /**
+     * @return The first slot in a room, or -1 if the room is empty.
+     */
+    private int findFirst(int room)
+    {
+        int key = findKey(room);
+        return roomKeys[key] == 0 ? -1 : firstSlots[key];
+    }
+
+    /**
+     * @return The entry of a room in the table of occupied rooms, or the
+     * free entry where it belongs.
+     */
+    private int findKey(int room)
+    {
+        int mask = roomKeys.length - 1;
+        int key = hash(room) & mask;
+        while (roomKeys[key] != 0 && roomKeys[key] != room + 1) {
+            key = (key + 1) & mask;
+        }
+        return key;
+    }
+
+    /**
+     * Free an entry of the table of occupied rooms, moving back any entries
+     * after it that would no longer be found.
+     */
+    private void removeKey(int key)
+    {
+        int mask = roomKeys.length - 1;
+        int free = key;
+        for (int k = (key + 1) & mask; roomKeys[k] != 0; k = (k + 1) & mask) {
+            int home = hash(roomKeys[k] - 1) & mask;
+            if (((k - home) & mask) >= ((k - free) & mask)) {
+                roomKeys[free] = roomKeys[k];
+                firstSlots[free] = firstSlots[k];
+                free = k;
+            }
+        }
+        roomKeys[free] = 0;
+        occupiedRooms--;
+    }
+
+    /**
+     * Rebuild the table of occupied rooms with a new size.
+     */
+    private void resize(int size)
+    {
+        int[] oldKeys = roomKeys;
+        int[] oldFirsts = firstSlots;
+        roomKeys = new int[size];
+        firstSlots = new int[size];
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldKeys[k] != 0) {
+                int key = findKey(oldKeys[k] - 1);
+                roomKeys[key] = oldKeys[k];
+                firstSlots[key] = oldFirsts[k];
+            }
+        }
+    }
+
+    /**
+     * @return A hash of a room number.
+     */
+    private static int hash(int room)
+    {
+        int hash = room * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,126 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+
+/**
+ * The rooms of one game session, created from the World the first time
+ * the session enters or looks at them.
+ *
+ * The items of all rooms are tracked by the table's ItemPlacements and
+ * the characters and the player by its RoomOccupancy, so a room holds no
+ * state of its own. Rooms are only held softly and the garbage collector
+ * may drop them when memory runs short; a room is simply created again
+ * when it is next needed.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class RoomTable
+{
+    private World world;                                // The world the rooms belong to
+    private ItemPlacements placements;                  // Where the session's items are
+    private RoomOccupancy occupancy;                    // Who is in which room
+    private HashMap<Integer, CachedRoom> held;          // The rooms held, by number
+    private ReferenceQueue<Room> dropped;               // Rooms the garbage collector has dropped
+
+    /**
+     * Create an empty table of the rooms of a world.
+     *
+     * @param world The world.
+     */
+    public RoomTable(World world)
+    {
+        this(world, new ItemPlacements(world), new RoomOccupancy());
+    }
+
+    /**
+     * Create an empty table of the rooms of a world, whose items and
+     * occupants are placed already.
+     *
+     * @param world The world.
+     * @param placements Where the session's items are.
+     * @param occupancy Who is in which room.
+     */
+    RoomTable(World world, ItemPlacements placements, RoomOccupancy occupancy)
+    {
+        this.world = world;
+        this.placements = placements;
+        this.occupancy = occupancy;
+        held = new HashMap<>();
+        dropped = new ReferenceQueue<>();
+    }
+
+    /**
+     * Return a room, creating it if the session does not hold it.
+     *
+     * @param id The number of the room.
+     * @return The room.
+     */
+    public Room get(int id)
+    {
+        removeDropped();
+        CachedRoom cached = held.get(id);
+        Room room = cached == null ? null : cached.get();
+        if (room == null) {
+            room = new Room(world, id, placements, occupancy);
+            held.put(id, new CachedRoom(room, dropped));
+        }
+        return room;
+    }
+
+    /**
+     * @return Where the session's items are.
+     */
+    public ItemPlacements getItemPlacements()
+    {
+        return placements;
+    }
+
+    /**
+     * @return Who is in which room.
+     */
+    public RoomOccupancy getOccupancy()
+    {
+        return occupancy;
+    }
+
+    /**
+     * @return The number of rooms held, including any the garbage collector
+     * has dropped since the table was last used.
+     */
+    public int getHeldCount()
+    {
+        return held.size();
+    }
+
+    /**
+     * Forget the rooms the garbage collector has dropped.
+     */
+    private void removeDropped()
+    {
+        Reference<? extends Room> reference;
+        while ((reference = dropped.poll()) != null) {
+            CachedRoom cached = (CachedRoom) reference;
+            held.remove(cached.id, cached);
+        }
+    }
+
+    /**
+     * A soft reference to a room that remembers the room's
+     * number, so that it can be removed from the table once it is cleared.
+     */
+    private static class CachedRoom extends SoftReference<Room>
+    {
+        private int id;     // The number of the room
+
+        /**
+         * Create a soft reference to a room.
+         */
+        CachedRoom(Room room, ReferenceQueue<Room> queue)
+        {
+            super(room, queue);
+            this.id = room.getId();
+        }
+    }
+}
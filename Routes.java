@@ -0,0 +1,434 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The shortest routes between the rooms of a world, used by the 'travel'
+ * command. Routes depend only on the exits of the world, so one Routes is
+ * shared by every session played on it.
+ *
+ * The routes to a room form a tree: for every room it holds the direction
+ * of the first step of a shortest way there, and how many steps the way
+ * takes. A tree is found with one breadth-first search backwards along the
+ * exits, starting at the room.
+ *
+ * In worlds of up to TABLE_ROOMS rooms the tree of every room is found
+ * when the routes are created, which gives a next-step table of three
+ * bytes per pair of rooms. In larger worlds a tree is only found when
+ * somebody travels to its room, and the most recently used trees are kept,
+ * up to about CACHE_BYTES in all.
+ *
+ * The distances between a few rooms, as the tours of the 'hint' command
+ * need them, are found by searching forwards from a room only until the
+ * other rooms are reached, and the most recently used ones are kept, up to
+ * DISTANCE_ENTRIES of them, so the rooms the items lie in are usually
+ * searched from only once for all sessions.
+ *
+ * Rooms are also found here by name, ignoring case, through a table of
+ * room numbers built when first needed.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class Routes
+{
+    private static final int TABLE_ROOMS = 2048;            // Largest world whose routes are all found at once
+    private static final long CACHE_BYTES = 64L << 20;      // Bytes of trees kept for a larger world
+    private static final char DEEP = 0xFFFF;                // The distance kept for rooms this far away or more
+    private static final int DISTANCE_ENTRIES = 1 << 16;    // Most distances between two rooms kept
+
+    private World world;                    // The world the routes lead through
+    private Tree[] table;                   // The tree of every room, or null in a large world
+    private Map<Integer, Tree> cache;       // The recently used trees of a large world, in order of use
+    private Map<Long, Integer> distances;   // Recently used distances by the rooms from and to, in order of use
+    private int[] reverseStart;             // The exits leading into room r are reverseStart[r] up to reverseStart[r + 1]
+    private int[] reverseSource;            // The room each of those exits leads from
+    private byte[] reverseDirection;        // The direction of each of those exits
+    private int[] nameTable;                // Room number + 1 by the hash of its name, 0 in free slots
+
+    /**
+     * The shortest routes from every room to one room.
+     */
+    public static final class Tree
+    {
+        private final World world;          // The world the routes lead through
+        private final int destination;      // The room the routes lead to
+        private final byte[] steps;         // The direction of the first step from each room, or -1
+        private final char[] distances;     // The steps from each room to the destination, at most DEEP
+
+        /**
+         * @param world The world.
+         * @param destination The room the routes lead to.
+         * @param steps The direction of the first step from each room, or -1.
+         * @param distances The steps from each room, or DEEP for a room at least that far.
+         */
+        private Tree(World world, int destination, byte[] steps, char[] distances)
+        {
+            this.world = world;
+            this.destination = destination;
+            this.steps = steps;
+            this.distances = distances;
+        }
+
+        /**
+         * @return The room the routes lead to.
+         */
+        public int getDestination()
+        {
+            return destination;
+        }
+
+        /**
+         * @param room The number of a room.
+         * @return The direction of the first step on a shortest way from the
+         * room to the destination, or null if the room is the destination or
+         * the destination cannot be reached from it.
+         */
+        public Direction getNextStep(int room)
+        {
+            int step = steps[room];
+            return step < 0 ? null : Direction.of(step);
+        }
+
+        /**
+         * @param room The number of a room.
+         * @return The room reached by the next step from the room, or -1 if there is none.
+         */
+        public int getNextRoom(int room)
+        {
+            int step = steps[room];
+            return step < 0 ? -1 : world.getExit(room, Direction.of(step));
+        }
+
+        /**
+         * @param room The number of a room.
+         * @return The number of steps on a shortest way from the room to the
+         * destination, or -1 if the destination cannot be reached from it.
+         * This takes constant time unless the room is DEEP steps away or more.
+         */
+        public int getDistance(int room)
+        {
+            if (!canReach(room)) {
+                return -1;
+            }
+            int distance = 0;
+            int r = room;
+            for (; distances[r] == DEEP; r = getNextRoom(r)) {
+                distance++;
+            }
+            return distance + distances[r];
+        }
+
+        /**
+         * @param room The number of a room.
+         * @return true if the destination can be reached from the room.
+         */
+        public boolean canReach(int room)
+        {
+            return room == destination || steps[room] >= 0;
+        }
+    }
+
+    /**
+     * Create the routes of a world. In a world of up to TABLE_ROOMS rooms
+     * every route is found now.
+     *
+     * @param world The world.
+     */
+    public Routes(World world)
+    {
+        this.world = world;
+        int rooms = world.getRoomCount();
+        if (rooms <= TABLE_ROOMS) {
+            buildReverseExits();
+            table = new Tree[rooms];
+            for (int room = 0; room < rooms; room++) {
+                table[room] = findTree(room);
+            }
+        }
+        else {
+            int trees = (int) Math.max(1, Math.min(Integer.MAX_VALUE, CACHE_BYTES / (3L * rooms)));
+            cache = new LinkedHashMap<Integer, Tree>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Tree> eldest)
+                {
+                    return size() > trees;
+                }
+            };
+        }
+        distances = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest)
+            {
+                return size() > DISTANCE_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Return the shortest routes to a room. In a large world the routes
+     * are found when they are not among the recently used ones; two
+     * sessions asking at once may both find them.
+     *
+     * @param destination The number of a room.
+     * @return The routes from every room to the room.
+     */
+    public Tree getRoutesTo(int destination)
+    {
+        if (table != null) {
+            return table[destination];
+        }
+        Tree tree;
+        synchronized (cache) {
+            tree = cache.get(destination);
+        }
+        if (tree == null) {
+            tree = findTree(destination);
+            synchronized (cache) {
+                cache.put(destination, tree);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Return the number of steps on a shortest way from a room to each of
+     * some rooms. The ways are searched forwards from the room until every
+     * one of the rooms is reached, unless all the distances are known.
+     *
+     * @param from The number of a room.
+     * @param to The numbers of the rooms to reach.
+     * @return The distance to each of them, or -1 where it cannot be reached.
+     */
+    public int[] getDistances(int from, int[] to)
+    {
+        int[] found = new int[to.length];
+        boolean known = true;
+        synchronized (distances) {
+            for (int i = 0; i < to.length && known; i++) {
+                Integer distance = distances.get((long) from << 32 | to[i]);
+                known = distance != null;
+                found[i] = known ? distance : -1;
+            }
+        }
+        if (known) {
+            return found;
+        }
+        search(from, to, found, null);
+        synchronized (distances) {
+            for (int i = 0; i < to.length; i++) {
+                distances.put((long) from << 32 | to[i], found[i]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param from The number of a room.
+     * @param to The number of another room.
+     * @return The direction of the first step on a shortest way from the
+     * room to the other room, or null if there is none. Only the rooms
+     * nearer than the other room are searched.
+     */
+    public Direction getFirstStep(int from, int to)
+    {
+        Direction[] steps = new Direction[1];
+        search(from, new int[] {to}, new int[1], steps);
+        return steps[0];
+    }
+
+    /**
+     * Search forwards along the exits from a room, one distance after
+     * another, until some rooms have all been reached or no more can be.
+     *
+     * @param from The room to search from.
+     * @param to The rooms to reach.
+     * @param distances Receives the distance to each of them, or -1.
+     * @param steps Receives the first step towards each of them, or null.
+     */
+    private void search(int from, int[] to, int[] distances, Direction[] steps)
+    {
+        int[] wanted = Arrays.stream(to).distinct().sorted().toArray();
+        int[] distance = new int[wanted.length];
+        byte[] step = new byte[wanted.length];
+        Arrays.fill(distance, -1);
+        int left = wanted.length;
+        int at = Arrays.binarySearch(wanted, from);
+        if (at >= 0) {
+            distance[at] = 0;
+            step[at] = -1;
+            left--;
+        }
+
+        long[] seen = new long[(world.getRoomCount() + 63) >>> 6];
+        seen[from >>> 6] |= 1L << from;
+        int[] queue = new int[64];
+        byte[] firstSteps = new byte[64];       // The first step towards each room in the queue
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        int level = 0;
+        int levelEnd = tail;
+        while (head < tail && left > 0) {
+            int room = queue[head];
+            for (int e = world.getFirstExit(room); e < world.getFirstExit(room + 1); e++) {
+                int target = world.getExitTarget(e);
+                if ((seen[target >>> 6] & 1L << target) != 0) {
+                    continue;
+                }
+                seen[target >>> 6] |= 1L << target;
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, tail * 2);
+                    firstSteps = Arrays.copyOf(firstSteps, tail * 2);
+                }
+                queue[tail] = target;
+                firstSteps[tail] = head == 0 ? (byte) world.getExitDirection(e).ordinal() : firstSteps[head];
+                at = Arrays.binarySearch(wanted, target);
+                if (at >= 0) {
+                    distance[at] = level + 1;
+                    step[at] = firstSteps[tail];
+                    left--;
+                }
+                tail++;
+            }
+            if (++head == levelEnd) {
+                level++;
+                levelEnd = tail;
+            }
+        }
+
+        for (int i = 0; i < to.length; i++) {
+            at = Arrays.binarySearch(wanted, to[i]);
+            distances[i] = distance[at];
+            if (steps != null) {
+                steps[i] = distance[at] <= 0 ? null : Direction.of(step[at]);
+            }
+        }
+    }
+
+    /**
+     * Find a room by its name, ignoring case, or else by its key in the
+     * world file. If several rooms have the name, the first is found.
+     *
+     * @param name The name or key of a room.
+     * @return The number of the room, or -1 if there is no such room.
+     */
+    public int findRoom(CharSequence name)
+    {
+        int[] names = getNameTable();
+        for (int slot = slot(name, names.length); names[slot] != 0; slot = (slot + 1) & (names.length - 1)) {
+            int room = names[slot] - 1;
+            if (ItemKey.matches(world.getRoomName(room), name)) {
+                return room;
+            }
+        }
+        return world.findRoom(name.toString());
+    }
+
+    /**
+     * Find the shortest routes to a room with a breadth-first search
+     * along the exits leading into each room reached.
+     *
+     * @param destination The number of a room.
+     * @return The routes from every room to the room.
+     */
+    private Tree findTree(int destination)
+    {
+        int[] sources;
+        byte[] directions;
+        int[] start;
+        synchronized (this) {
+            if (reverseStart == null) {
+                buildReverseExits();
+            }
+            start = reverseStart;
+            sources = reverseSource;
+            directions = reverseDirection;
+        }
+
+        byte[] steps = new byte[world.getRoomCount()];
+        Arrays.fill(steps, (byte) -1);
+        char[] distances = new char[steps.length];
+        int[] queue = new int[steps.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = destination;
+        while (head < tail) {
+            int room = queue[head++];
+            char distance = distances[room] == DEEP ? DEEP : (char) (distances[room] + 1);
+            for (int e = start[room]; e < start[room + 1]; e++) {
+                int source = sources[e];
+                if (steps[source] < 0 && source != destination) {
+                    steps[source] = directions[e];
+                    distances[source] = distance;
+                    queue[tail++] = source;
+                }
+            }
+        }
+        return new Tree(world, destination, steps, distances);
+    }
+
+    /**
+     * Turn the exits of the world around, so that the exits leading into
+     * a room can be followed backwards.
+     */
+    private void buildReverseExits()
+    {
+        int rooms = world.getRoomCount();
+        int exits = world.getExitCount();
+        int[] start = new int[rooms + 1];
+        for (int e = 0; e < exits; e++) {
+            start[world.getExitTarget(e) + 1]++;
+        }
+        for (int r = 0; r < rooms; r++) {
+            start[r + 1] += start[r];
+        }
+        int[] fill = Arrays.copyOf(start, rooms);
+        int[] sources = new int[exits];
+        byte[] directions = new byte[exits];
+        for (int room = 0; room < rooms; room++) {
+            for (int e = world.getFirstExit(room); e < world.getFirstExit(room + 1); e++) {
+                int slot = fill[world.getExitTarget(e)]++;
+                sources[slot] = room;
+                directions[slot] = (byte) world.getExitDirection(e).ordinal();
+            }
+        }
+        reverseStart = start;
+        reverseSource = sources;
+        reverseDirection = directions;
+    }
+
+    /**
+     * @return The table of rooms by name, built when first needed.
+     */
+    private synchronized int[] getNameTable()
+    {
+        if (nameTable == null) {
+            int rooms = world.getRoomCount();
+            int[] names = new int[Integer.highestOneBit(Math.max(2, rooms + rooms / 2) - 1) << 1];
+            for (int room = 0; room < rooms; room++) {
+                String name = world.getRoomName(room);
+                int slot = slot(name, names.length);
+                boolean seen = false;
+                while (names[slot] != 0 && !seen) {
+                    seen = ItemKey.matches(world.getRoomName(names[slot] - 1), name);
+                    slot = (slot + 1) & (names.length - 1);
+                }
+                if (!seen) {
+                    names[slot] = room + 1;
+                }
+            }
+            nameTable = names;
+        }
+        return nameTable;
+    }
+
+    /**
+     * @return Where to start looking for a room name in a table of a size.
+     */
+    private static int slot(CharSequence name, int tableSize)
+    {
+        int hash = ItemKey.hash(name) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (tableSize - 1);
+    }
+}
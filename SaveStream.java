@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The bytes of a saved game, written or read in order.
+ *
+ * Numbers are written as unsigned variable-length integers: seven bits
+ * per byte, lowest first, with the top bit set on every byte but the last.
+ * Room and item numbers below 128 therefore take one byte and those below
+ * 16384 two. Text is written as its length in bytes followed by its UTF-8
+ * encoding.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class SaveStream
+{
+    private byte[] bytes;       // The bytes written, or the bytes being read
+    private int position;       // The number of bytes written, or the next byte to read
+    private int limit;          // The number of bytes that can be read
+
+    /**
+     * Create an empty stream to write to.
+     */
+    public SaveStream()
+    {
+        bytes = new byte[256];
+        position = 0;
+        limit = 0;
+    }
+
+    /**
+     * Create a stream to read saved bytes from.
+     *
+     * @param saved The bytes of a saved game.
+     */
+    public SaveStream(byte[] saved)
+    {
+        bytes = saved;
+        position = 0;
+        limit = saved.length;
+    }
+
+    /**
+     * @return A copy of the bytes written.
+     */
+    public byte[] toByteArray()
+    {
+        return Arrays.copyOf(bytes, position);
+    }
+
+    /**
+     * Write a number.
+     *
+     * @param value The number, 0 or more.
+     */
+    public void writeNumber(int value)
+    {
+        ensureCapacity(position + 5);
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    /**
+     * Write a fixed four-byte number, for example a file signature.
+     *
+     * @param value The number.
+     */
+    public void writeInt(int value)
+    {
+        ensureCapacity(position + 4);
+        bytes[position++] = (byte) (value >>> 24);
+        bytes[position++] = (byte) (value >>> 16);
+        bytes[position++] = (byte) (value >>> 8);
+        bytes[position++] = (byte) value;
+    }
+
+    /**
+     * Write a fixed eight-byte number, for example a random seed.
+     *
+     * @param value The number.
+     */
+    public void writeLong(long value)
+    {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    /**
+     * Write a block of bytes, for example a saved game inside a journal.
+     *
+     * @param block The bytes.
+     */
+    public void writeBytes(byte[] block)
+    {
+        writeNumber(block.length);
+        ensureCapacity(position + block.length);
+        System.arraycopy(block, 0, bytes, position, block.length);
+        position += block.length;
+    }
+
+    /**
+     * Write text.
+     *
+     * @param text The text.
+     */
+    public void writeString(String text)
+    {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        writeNumber(encoded.length);
+        ensureCapacity(position + encoded.length);
+        System.arraycopy(encoded, 0, bytes, position, encoded.length);
+        position += encoded.length;
+    }
+
+    /**
+     * @return The next number.
+     * @throws IOException If the bytes end or the number is too large.
+     */
+    public int readNumber() throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in saved game at byte " + position);
+    }
+
+    /**
+     * Read a number that must lie in a range.
+     *
+     * @param bound The number must be less than this.
+     * @return The next number.
+     * @throws IOException If the bytes end or the number is out of range.
+     */
+    public int readNumber(int bound) throws IOException
+    {
+        int value = readNumber();
+        if (value >= bound) {
+            throw new IOException("Number " + value + " out of range in saved game at byte " + position);
+        }
+        return value;
+    }
+
+    /**
+     * @return The next fixed four-byte number.
+     * @throws IOException If the bytes end.
+     */
+    public int readInt() throws IOException
+    {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    /**
+     * @return The next fixed eight-byte number.
+     * @throws IOException If the bytes end.
+     */
+    public long readLong() throws IOException
+    {
+        return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return The next block of bytes.
+     * @throws IOException If the bytes end.
+     */
+    public byte[] readBytes() throws IOException
+    {
+        int length = readNumber();
+        if (length > limit - position) {
+            throw new IOException("Saved game ends early");
+        }
+        position += length;
+        return Arrays.copyOfRange(bytes, position - length, position);
+    }
+
+    /**
+     * @return The next text.
+     * @throws IOException If the bytes end.
+     */
+    public String readString() throws IOException
+    {
+        int length = readNumber();
+        if (length > limit - position) {
+            throw new IOException("Saved game ends early");
+        }
+        String text = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return text;
+    }
+
+    /**
+     * @return true if every byte has been read.
+     */
+    public boolean atEnd()
+    {
+        return position == limit;
+    }
+
+    /**
+     * @return The next byte, from 0 to 255.
+     */
+    private int readByte() throws IOException
+    {
+        if (position == limit) {
+            throw new IOException("Saved game ends early");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    /**
+     * Grow the storage to hold at least a number of bytes.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
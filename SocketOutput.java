@@ -0,0 +1,43 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+
+/**
+ * Writes a session's output to a network connection. Each turn is sent
+ * with a single write on the socket, without going through System.out.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class SocketOutput implements OutputSink
+{
+    private OutputStream out;   // The connection's output stream
+
+    /**
+     * Create a sink that writes to a connection.
+     *
+     * @param socket The connection.
+     */
+    public SocketOutput(Socket socket) throws IOException
+    {
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * Send the text of one turn.
+     *
+     * @param turn The text of the turn.
+     * @throws UncheckedIOException If the connection is lost.
+     */
+    public void writeTurn(TurnBuffer turn)
+    {
+        try {
+            turn.writeTo(out);
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
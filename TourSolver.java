@@ -0,0 +1,859 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the quickest way to win a game from a given point: the fewest
+ * moves that pick up every required item the player does not carry yet
+ * and then enter the goal room. It is used for the 'hint' command, to
+ * check that a world can be won at all, and to give a par for speedruns.
+ *
+ * The tour visits one room holding each missing item, in the best order.
+ * Only 'go' moves count; taking and dropping items are extra commands of
+ * the tour but take no time. Items must all be carried at the end, so the
+ * player's weight limit decides which of several items of the same name
+ * can be chosen, and things the player carries that are not required are
+ * dropped first if they are in the way.
+ *
+ * The distances between the rooms of the tour come from the world's
+ * Routes. When the items of each name weigh the same, or there is room to
+ * carry the heaviest of each, the best tour is found by dynamic
+ * programming over the sets of names collected so far, which takes time
+ * and memory in proportion to 2^names times the rooms involved; each size
+ * of set is worked out in parallel. Otherwise, or when the table would
+ * have more than TABLE_STATES entries, the orders are searched by branch
+ * and bound, starting from the nearest-item tour and cutting off every
+ * order that cannot beat the best tour found so far. The search gives up
+ * after SEARCH_NODES situations and keeps the best tour it found by then,
+ * so a hint never takes long; such a tour is not known to be optimal.
+ * Sets of names are kept as bits of an int, so no tour is planned for
+ * more than MAX_NAMES missing names.
+ *
+ * The parallel parts of every solver run on one fork/join pool of the
+ * solvers' own, with a thread per processor, so that no number of hints
+ * can take over the common pool.
+ *
+ * A solver finds the tour of one situation; create another for the next.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class TourSolver
+{
+    private static final int TABLE_STATES = 1 << 24;        // Most entries of the table of best tours
+    private static final int PARALLEL_STATES = 1 << 16;     // Fewest entries for which the table is filled in parallel
+    private static final int MAX_NAMES = 31;                // Most missing names a tour is planned for
+    private static final int MEMO_STATES = 1 << 22;         // Most situations the search remembers
+    private static final int SPLIT_DEPTH = 2;               // Items chosen before a search branch runs as one task
+    private static final int SEARCH_NODES = 1 << 18;        // Most situations the search looks at
+    private static final int FAR = Integer.MAX_VALUE / 4;   // The distance to a room that cannot be reached
+    private static final ForkJoinPool POOL =
+        new ForkJoinPool(Runtime.getRuntime().availableProcessors());   // Runs the parallel parts of every solver
+
+    private World world;                // The world being played
+    private Routes routes;              // The shortest routes of the world
+    private int start;                  // The room the tour starts in
+    private int goal;                   // The room the tour ends in
+    private List<String> drops;         // The names of the items to drop first
+    private String problem;             // Why the game cannot be won, or null
+
+    private int names;                  // The number of names to collect
+    private int points;                 // Point 0 is the start, the others rooms holding a missing item
+    private int[] rooms;                // The room of each point
+    private Item[] items;               // The item picked up at each point
+    private int[] nameOf;               // The name collected at each point, -1 at the start
+    private int[] firstPoint;           // The points of name n are firstPoint[n] up to firstPoint[n + 1]
+    private int[][] distances;          // The moves from each point to each other point
+    private int[] finish;               // The moves from each point into the goal room
+    private int[] lightest;             // The weight of the lightest item of each name
+    private int capacity;               // The weight the player can take on for the items to collect
+    private boolean uniform;            // Whether any item of each name can be chosen
+
+    private int[][] nameDistances;      // The fewest moves from the rooms of each name to those of each other
+    private int[] nameFinish;           // The fewest moves from the rooms of each name into the goal room
+    private Map<Long, Long> reached;    // The fewest moves seen to each situation of the search, and their weight
+    private AtomicInteger bound;        // The moves of the best tour found so far, for the search
+    private AtomicInteger searched;     // The situations the search has looked at
+    private int[] bestOrder;            // The points of the best tour found so far
+
+    /**
+     * The quickest way to win, or why there is none. Its commands are only
+     * worked out when they are asked for.
+     */
+    public static final class Tour
+    {
+        private final TourSolver solver;        // The solver that found the tour, or null
+        private final int[] order;              // The points of the tour, or null
+        private final int moves;                // The number of 'go' commands
+        private final String problem;           // Why the game cannot be won, or null
+        private final boolean optimal;          // Whether no tour takes fewer moves
+        private List<String> commands;          // The commands of the tour, once worked out
+
+        /**
+         * @param solver The solver, or null.
+         * @param order The points of the tour, or null.
+         * @param moves The number of moves.
+         * @param problem Why the game cannot be won, or null.
+         * @param optimal Whether no tour takes fewer moves.
+         */
+        private Tour(TourSolver solver, int[] order, int moves, String problem, boolean optimal)
+        {
+            this.solver = solver;
+            this.order = order;
+            this.moves = moves;
+            this.problem = problem;
+            this.optimal = optimal;
+        }
+
+        /**
+         * @return true if the game can be won.
+         */
+        public boolean isSolvable()
+        {
+            return order != null;
+        }
+
+        /**
+         * @return The commands that win the game, in order, or an empty
+         * list if it cannot be won.
+         */
+        public synchronized List<String> getCommands()
+        {
+            if (order == null) {
+                return Collections.emptyList();
+            }
+            if (commands == null) {
+                commands = solver.toCommands(order);
+            }
+            return commands;
+        }
+
+        /**
+         * @return The first command of the tour, or null if the game cannot
+         * be won. This only searches the way to the first room of the tour.
+         */
+        public synchronized String getFirstCommand()
+        {
+            if (order == null) {
+                return null;
+            }
+            return commands != null ? commands.get(0) : solver.toFirstCommand(order);
+        }
+
+        /**
+         * @return The number of moves the tour takes, or -1 if the game
+         * cannot be won.
+         */
+        public int getMoves()
+        {
+            return order == null ? -1 : moves;
+        }
+
+        /**
+         * @return true if no tour takes fewer moves, false if the search
+         * gave up before it could tell.
+         */
+        public boolean isOptimal()
+        {
+            return optimal;
+        }
+
+        /**
+         * @return Why the game cannot be won, or null if it can.
+         */
+        public String getProblem()
+        {
+            return problem;
+        }
+    }
+
+    /**
+     * Set up the problem of winning from a situation of a game.
+     *
+     * @param world The world being played.
+     * @param start The room the player is in.
+     * @param placements Where the items of the world are.
+     * @param player The player, with what they carry.
+     */
+    public TourSolver(World world, int start, ItemPlacements placements, Player player)
+    {
+        this.world = world;
+        this.routes = world.getRoutes();
+        this.start = start;
+        this.goal = world.getGoalRoom();
+        drops = new ArrayList<>();
+        findPoints(placements, player);
+        if (problem == null) {
+            findDistances();
+        }
+    }
+
+    /**
+     * Find the quickest tour.
+     *
+     * @return The tour.
+     */
+    public Tour solve()
+    {
+        if (problem != null) {
+            return new Tour(null, null, 0, problem, true);
+        }
+        if (names > MAX_NAMES) {
+            return new Tour(null, null, 0, "there are too many items to plan a tour for", true);
+        }
+        int[] order;
+        if (uniform && (long) (points - 1) << names <= TABLE_STATES) {
+            order = solveByTable();
+        }
+        else {
+            order = solveBySearch();
+        }
+        boolean optimal = searched == null || searched.get() <= SEARCH_NODES;
+        if (order == null) {
+            return new Tour(null, null, 0, "the items cannot all be reached", optimal);
+        }
+        return new Tour(this, order, movesOf(order), null, optimal);
+    }
+
+    /**
+     * Find the names still to collect and the rooms holding them.
+     */
+    private void findPoints(ItemPlacements placements, Player player)
+    {
+        WinCondition condition = world.getWinCondition();
+        int[] missing = new int[condition.size()];
+        Arrays.fill(missing, -1);
+        List<String> missingNames = new ArrayList<>();
+        for (String name : world.getRequiredItems()) {
+            int bit = condition.getBit(name);
+            if (!player.hasItem(name) && missing[bit] < 0) {
+                missing[bit] = missingNames.size();
+                missingNames.add(name);
+            }
+        }
+        names = missingNames.size();
+
+        // The rooms holding a pickable item of a missing name, one item per room and name
+        List<List<Item>> found = new ArrayList<>();
+        for (int n = 0; n < names; n++) {
+            found.add(new ArrayList<>());
+        }
+        Set<Long> seen = new HashSet<>();
+        for (int i : condition.getRequiredItemNumbers()) {
+            int n = missing[world.getItemGoalBit(i)];
+            if (n < 0) {
+                continue;
+            }
+            Item item = world.getItem(i);
+            if (!item.isPickable()) {
+                continue;
+            }
+            int at = placements.getRoom(i);
+            if (at != ItemPlacements.NOWHERE && seen.add((long) at * names + n)) {
+                found.get(n).add(item);
+            }
+        }
+
+        points = 1;
+        firstPoint = new int[names + 1];
+        lightest = new int[names];
+        int lightestTotal = 0;
+        int heaviestTotal = 0;
+        for (int n = 0; n < names; n++) {
+            List<Item> candidates = found.get(n);
+            if (candidates.isEmpty()) {
+                problem = "there is no " + missingNames.get(n) + " to be found";
+                return;
+            }
+            firstPoint[n] = points;
+            points += candidates.size();
+            int light = Integer.MAX_VALUE;
+            int heavy = 0;
+            for (Item item : candidates) {
+                light = Math.min(light, item.getWeight());
+                heavy = Math.max(heavy, item.getWeight());
+            }
+            lightest[n] = light;
+            lightestTotal += light;
+            heaviestTotal += heavy;
+        }
+        firstPoint[names] = points;
+
+        rooms = new int[points];
+        items = new Item[points];
+        nameOf = new int[points];
+        rooms[0] = start;
+        nameOf[0] = -1;
+        for (int n = 0, p = 1; n < names; n++) {
+            for (Item item : found.get(n)) {
+                rooms[p] = placements.getRoom(item.getId());
+                items[p] = item;
+                nameOf[p] = n;
+                p++;
+            }
+        }
+
+        // Make room by dropping the heaviest things that are not required
+        capacity = player.getMaxWeight() - player.getCurrentWeight();
+        List<Item> extras = new ArrayList<>();
+        for (Item item : player.getInventory()) {
+            if (condition.getBit(item) < 0) {
+                extras.add(item);
+            }
+        }
+        extras.sort((a, b) -> Integer.compare(b.getWeight(), a.getWeight()));
+        for (Item extra : extras) {
+            if (capacity >= lightestTotal) {
+                break;
+            }
+            drops.add(extra.getName());
+            capacity += extra.getWeight();
+        }
+        if (capacity < lightestTotal) {
+            problem = "the required items weigh more than can be carried";
+            return;
+        }
+        uniform = heaviestTotal <= capacity;
+    }
+
+    /**
+     * Find the moves between every two points and from every point into
+     * the goal room, searching from the points in parallel.
+     */
+    private void findDistances()
+    {
+        // The win is only seen when the goal room is entered, so a tour
+        // that ends in the goal room must leave it and come back
+        int around = FAR;
+        int[] toGoal = { goal };
+        for (int e = world.getFirstExit(goal); e < world.getFirstExit(goal + 1); e++) {
+            int distance = routes.getDistances(world.getExitTarget(e), toGoal)[0];
+            if (distance >= 0) {
+                around = Math.min(around, distance + 1);
+            }
+        }
+
+        // No tour comes back to the start, so only the ways to the other
+        // points are needed, and they stay the same while the player moves
+        int[] targets = Arrays.copyOfRange(rooms, 1, points + 1);
+        targets[points - 1] = goal;
+        distances = new int[points][points];
+        finish = new int[points];
+        int aroundGoal = around;
+        POOL.submit(() -> IntStream.range(0, points).parallel().forEach(p -> {
+            int[] found = routes.getDistances(rooms[p], targets);
+            distances[p][0] = FAR;
+            for (int q = 1; q < points; q++) {
+                distances[p][q] = found[q - 1] < 0 ? FAR : found[q - 1];
+            }
+            finish[p] = rooms[p] == goal ? aroundGoal : found[points - 1] < 0 ? FAR : found[points - 1];
+        })).join();
+    }
+
+    /**
+     * Find the best tour by dynamic programming. The table holds for every
+     * set of names and every point of a name in the set the fewest moves
+     * that start at the start, collect the set and end at the point.
+     *
+     * @return The points of the best tour, or null if there is none.
+     */
+    private int[] solveByTable()
+    {
+        int candidates = points - 1;
+        int full = (1 << names) - 1;
+        if (names == 0) {
+            return finish[0] >= FAR ? null : new int[0];
+        }
+        int[] best = new int[(full + 1) * candidates];
+        for (int size = 1; size <= names; size++) {
+            int setSize = size;
+            IntStream sets = IntStream.rangeClosed(1, full).filter(set -> Integer.bitCount(set) == setSize);
+            if (best.length >= PARALLEL_STATES) {
+                POOL.submit(() -> sets.parallel().forEach(set -> fillTable(best, set))).join();
+            }
+            else {
+                sets.forEach(set -> fillTable(best, set));
+            }
+        }
+
+        int last = -1;
+        int moves = FAR;
+        for (int p = 1; p < points; p++) {
+            int total = best[full * candidates + p - 1] + finish[p];
+            if (total < moves) {
+                moves = total;
+                last = p;
+            }
+        }
+        if (last < 0) {
+            return null;
+        }
+
+        // Walk the table back from the last point
+        int[] order = new int[names];
+        int set = full;
+        for (int i = names - 1; i >= 0; i--) {
+            order[i] = last;
+            int cost = best[set * candidates + last - 1];
+            set &= ~(1 << nameOf[last]);
+            if (set != 0) {
+                last = previousPoint(best, set, last, cost);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Fill the entries of the table for one set of names.
+     */
+    private void fillTable(int[] best, int set)
+    {
+        int candidates = points - 1;
+        for (int rest = set; rest != 0; rest &= rest - 1) {
+            int n = Integer.numberOfTrailingZeros(rest);
+            int before = set & ~(1 << n);
+            for (int p = firstPoint[n]; p < firstPoint[n + 1]; p++) {
+                int moves;
+                if (before == 0) {
+                    moves = distances[0][p];
+                }
+                else {
+                    moves = FAR;
+                    for (int others = before; others != 0; others &= others - 1) {
+                        int m = Integer.numberOfTrailingZeros(others);
+                        for (int q = firstPoint[m]; q < firstPoint[m + 1]; q++) {
+                            moves = Math.min(moves, best[before * candidates + q - 1] + distances[q][p]);
+                        }
+                    }
+                }
+                best[set * candidates + p - 1] = Math.min(moves, FAR);
+            }
+        }
+    }
+
+    /**
+     * @return The point before a point on a best tour that collects a set of
+     * names and then reaches the point with a number of moves.
+     */
+    private int previousPoint(int[] best, int set, int point, int moves)
+    {
+        int candidates = points - 1;
+        for (int others = set; others != 0; others &= others - 1) {
+            int m = Integer.numberOfTrailingZeros(others);
+            for (int q = firstPoint[m]; q < firstPoint[m + 1]; q++) {
+                if (best[set * candidates + q - 1] + distances[q][point] == moves) {
+                    return q;
+                }
+            }
+        }
+        throw new IllegalStateException("The table of tours is inconsistent");
+    }
+
+    /**
+     * Find the best tour by branch and bound.
+     *
+     * @return The points of the best tour, or null if there is none.
+     */
+    private int[] solveBySearch()
+    {
+        findNameDistances();
+        reached = new ConcurrentHashMap<>();
+        bound = new AtomicInteger(FAR);
+        searched = new AtomicInteger();
+        bestOrder = null;
+        int[] greedy = nearestTour();
+        if (greedy != null) {
+            improve(greedy);
+            record(greedy, greedy.length, movesOf(greedy));
+        }
+        int full = (1 << names) - 1;
+        POOL.invoke(new Branch(new int[names], 0, 0, 0, 0, full));
+        return bestOrder;
+    }
+
+    /**
+     * Find the fewest moves between the rooms of every two names and from
+     * the rooms of every name into the goal room, for the lower bounds.
+     */
+    private void findNameDistances()
+    {
+        nameDistances = new int[names][names];
+        nameFinish = new int[names];
+        for (int n = 0; n < names; n++) {
+            nameFinish[n] = FAR;
+            for (int p = firstPoint[n]; p < firstPoint[n + 1]; p++) {
+                nameFinish[n] = Math.min(nameFinish[n], finish[p]);
+            }
+            for (int m = 0; m < names; m++) {
+                int moves = FAR;
+                for (int p = firstPoint[n]; p < firstPoint[n + 1]; p++) {
+                    for (int q = firstPoint[m]; q < firstPoint[m + 1]; q++) {
+                        moves = Math.min(moves, distances[p][q]);
+                    }
+                }
+                nameDistances[n][m] = moves;
+            }
+        }
+    }
+
+    /**
+     * A part of the search: every tour that starts with the points chosen so
+     * far. The first SPLIT_DEPTH choices are made by separate tasks.
+     */
+    private final class Branch extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;          // The points chosen so far
+        private final int depth;            // The number of points chosen
+        private final int moves;            // The moves up to the last point chosen
+        private final int weight;           // The weight of the items chosen
+        private final int collected;        // The set of names collected
+        private final int full;             // The set of all names
+
+        Branch(int[] order, int depth, int moves, int weight, int collected, int full)
+        {
+            this.order = order;
+            this.depth = depth;
+            this.moves = moves;
+            this.weight = weight;
+            this.collected = collected;
+            this.full = full;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (depth >= SPLIT_DEPTH || collected == full) {
+                search(order, depth, moves, weight, collected, full);
+                return;
+            }
+            int at = depth == 0 ? 0 : order[depth - 1];
+            List<Branch> branches = new ArrayList<>();
+            for (int p : choices(at, weight, collected)) {
+                int[] longer = order.clone();
+                longer[depth] = p;
+                branches.add(new Branch(longer, depth + 1, moves + distances[at][p],
+                    weight + items[p].getWeight(), collected | 1 << nameOf[p], full));
+            }
+            invokeAll(branches);
+        }
+    }
+
+    /**
+     * Search every tour that starts with the points chosen so far, one after
+     * another, unless the search has looked at SEARCH_NODES situations.
+     */
+    private void search(int[] order, int depth, int moves, int weight, int collected, int full)
+    {
+        if (searched.incrementAndGet() > SEARCH_NODES) {
+            return;
+        }
+        int at = depth == 0 ? 0 : order[depth - 1];
+        if (collected == full) {
+            int total = moves + finish[at];
+            if (total < bound.get()) {
+                record(order, depth, total);
+            }
+            return;
+        }
+        if (moves + lowerBound(at, collected) >= bound.get()) {
+            return;
+        }
+
+        // Another order that got here as quickly with no more weight makes this one useless
+        long state = (long) collected * points + at;
+        long here = (long) moves << 32 | (uniform ? 0 : weight);
+        Long before = reached.get(state);
+        if (before != null && before >>> 32 <= moves && (int) (long) before <= (int) here) {
+            return;
+        }
+        if (before != null || reached.size() < MEMO_STATES) {
+            reached.merge(state, here, (old, now) -> old >>> 32 <= now >>> 32 ? old : now);
+        }
+
+        for (int p : choices(at, weight, collected)) {
+            order[depth] = p;
+            search(order, depth + 1, moves + distances[at][p], weight + items[p].getWeight(),
+                collected | 1 << nameOf[p], full);
+        }
+    }
+
+    /**
+     * @return The points that can be visited next, nearest first: those of
+     * names not yet collected whose items can still be carried together with
+     * the lightest of the rest.
+     */
+    private int[] choices(int at, int weight, int collected)
+    {
+        int spare = capacity - weight;
+        for (int n = 0; n < names; n++) {
+            if ((collected & 1 << n) == 0) {
+                spare -= lightest[n];
+            }
+        }
+        int[] chosen = new int[points];
+        int count = 0;
+        for (int n = 0; n < names; n++) {
+            if ((collected & 1 << n) != 0) {
+                continue;
+            }
+            for (int p = firstPoint[n]; p < firstPoint[n + 1]; p++) {
+                if (items[p].getWeight() - lightest[n] <= spare && distances[at][p] < FAR) {
+                    chosen[count++] = p;
+                }
+            }
+        }
+        int[] distance = distances[at];
+        for (int i = 1; i < count; i++) {
+            int p = chosen[i];
+            int j = i;
+            for (; j > 0 && distance[chosen[j - 1]] > distance[p]; j--) {
+                chosen[j] = chosen[j - 1];
+            }
+            chosen[j] = p;
+        }
+        return Arrays.copyOf(chosen, count);
+    }
+
+    /**
+     * @return Fewer moves than any tour from a point that collects the names
+     * not yet collected can take. Three bounds are worked out and the
+     * highest is taken. Each of the names must be reached on the way from
+     * the point into the goal room. Each is first entered from the point or
+     * from another of them, and the goal room from one of them. And the
+     * legs of the tour join the point, the names and the goal room, so
+     * they are no shorter than a minimum spanning tree of them.
+     */
+    private int lowerBound(int at, int collected)
+    {
+        int[] left = new int[names];
+        int[] fromHere = new int[names];
+        int count = 0;
+        int longest = 0;
+        int last = FAR;
+        for (int n = 0; n < names; n++) {
+            if ((collected & 1 << n) != 0) {
+                continue;
+            }
+            int entry = FAR;
+            int through = FAR;
+            for (int p = firstPoint[n]; p < firstPoint[n + 1]; p++) {
+                entry = Math.min(entry, distances[at][p]);
+                through = Math.min(through, distances[at][p] + finish[p]);
+            }
+            longest = Math.max(longest, through);
+            left[count] = n;
+            fromHere[count] = entry;
+            count++;
+            last = Math.min(last, nameFinish[n]);
+        }
+
+        int entries = last;
+        for (int i = 0; i < count; i++) {
+            int entry = fromHere[i];
+            for (int j = 0; j < count; j++) {
+                if (j != i) {
+                    entry = Math.min(entry, nameDistances[left[j]][left[i]]);
+                }
+            }
+            entries = Math.min(FAR, entries + entry);
+        }
+
+        // Prim's algorithm over the point, the names and the goal room,
+        // with the goal room last; the point is already in the tree
+        int[] link = new int[count + 1];
+        boolean[] inTree = new boolean[count + 1];
+        for (int i = 0; i < count; i++) {
+            link[i] = fromHere[i];
+        }
+        link[count] = FAR;
+        int tree = 0;
+        for (int added = 0; added <= count; added++) {
+            int next = -1;
+            for (int i = 0; i <= count; i++) {
+                if (!inTree[i] && (next < 0 || link[i] < link[next])) {
+                    next = i;
+                }
+            }
+            inTree[next] = true;
+            tree = Math.min(FAR, tree + link[next]);
+            for (int i = 0; i <= count; i++) {
+                if (inTree[i]) {
+                    continue;
+                }
+                int edge;
+                if (next == count || i == count) {
+                    edge = nameFinish[left[next == count ? i : next]];
+                }
+                else {
+                    edge = Math.min(nameDistances[left[next]][left[i]], nameDistances[left[i]][left[next]]);
+                }
+                link[i] = Math.min(link[i], edge);
+            }
+        }
+        return Math.max(longest, Math.max(entries, tree));
+    }
+
+    /**
+     * Shorten a tour by reversing parts of its order for as long as that
+     * helps. The same items are collected, so the tour weighs the same.
+     */
+    private void improve(int[] order)
+    {
+        int moves = movesOf(order);
+        boolean better = true;
+        while (better) {
+            better = false;
+            for (int i = 0; i < order.length - 1; i++) {
+                for (int j = i + 1; j < order.length; j++) {
+                    reverse(order, i, j);
+                    int shorter = movesOf(order);
+                    if (shorter < moves) {
+                        moves = shorter;
+                        better = true;
+                    }
+                    else {
+                        reverse(order, i, j);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reverse the points of an order from one place to another.
+     */
+    private static void reverse(int[] order, int from, int to)
+    {
+        for (; from < to; from++, to--) {
+            int p = order[from];
+            order[from] = order[to];
+            order[to] = p;
+        }
+    }
+
+    /**
+     * @return The tour that always goes to the nearest item it can still
+     * carry, or null if it gets stuck.
+     */
+    private int[] nearestTour()
+    {
+        int[] order = new int[names];
+        int at = 0;
+        int weight = 0;
+        int collected = 0;
+        for (int i = 0; i < names; i++) {
+            int[] next = choices(at, weight, collected);
+            if (next.length == 0) {
+                return null;
+            }
+            at = next[0];
+            order[i] = at;
+            weight += items[at].getWeight();
+            collected |= 1 << nameOf[at];
+        }
+        return finish[at] >= FAR ? null : order;
+    }
+
+    /**
+     * @return The moves of a tour through the points in an order.
+     */
+    private int movesOf(int[] order)
+    {
+        int moves = 0;
+        int at = 0;
+        for (int p : order) {
+            moves += distances[at][p];
+            at = p;
+        }
+        return moves + finish[at];
+    }
+
+    /**
+     * Keep a tour if it is better than the best one found so far.
+     */
+    private synchronized void record(int[] order, int length, int moves)
+    {
+        if (moves < bound.get()) {
+            bestOrder = Arrays.copyOf(order, length);
+            bound.set(moves);
+        }
+    }
+
+    /**
+     * @return The commands of a tour through the points in an order.
+     */
+    private List<String> toCommands(int[] order)
+    {
+        List<String> commands = new ArrayList<>();
+        for (String name : drops) {
+            commands.add(CommandWord.DROP + " " + name);
+        }
+        int at = start;
+        for (int p : order) {
+            walk(at, rooms[p], commands);
+            at = rooms[p];
+            commands.add(CommandWord.TAKE + " " + items[p].getName());
+        }
+        if (at == goal) {
+            commands.add(CommandWord.GO + " " + stepOutOfGoal(order));
+            at = world.getExit(goal, stepOutOfGoal(order));
+        }
+        walk(at, goal, commands);
+        return Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * @return The first command of a tour through the points in an order.
+     */
+    private String toFirstCommand(int[] order)
+    {
+        if (!drops.isEmpty()) {
+            return CommandWord.DROP + " " + drops.get(0);
+        }
+        if (order.length > 0 && rooms[order[0]] == start) {
+            return CommandWord.TAKE + " " + items[order[0]].getName();
+        }
+        if (order.length == 0 && start == goal) {
+            return CommandWord.GO + " " + stepOutOfGoal(order);
+        }
+        return CommandWord.GO + " " + routes.getFirstStep(start, order.length > 0 ? rooms[order[0]] : goal);
+    }
+
+    /**
+     * @return The direction of the shortest way out of the goal room and
+     * back in, taken when a tour through the points in an order ends there.
+     */
+    private Direction stepOutOfGoal(int[] order)
+    {
+        int around = finish[order.length == 0 ? 0 : order[order.length - 1]];
+        int[] toGoal = { goal };
+        for (int e = world.getFirstExit(goal); e < world.getFirstExit(goal + 1); e++) {
+            if (routes.getDistances(world.getExitTarget(e), toGoal)[0] + 1 == around) {
+                return world.getExitDirection(e);
+            }
+        }
+        throw new IllegalStateException("The goal room cannot be left and entered again");
+    }
+
+    /**
+     * Add the moves along a shortest way between two rooms to a list of commands.
+     */
+    private void walk(int from, int to, List<String> commands)
+    {
+        Routes.Tree tree = routes.getRoutesTo(to);
+        for (int r = from; r != to; r = tree.getNextRoom(r)) {
+            commands.add(CommandWord.GO + " " + tree.getNextStep(r));
+        }
+    }
+}
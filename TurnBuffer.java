@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable buffer that collects the text of one turn as UTF-8 bytes.
+ * The game appends to it while a command is processed and hands it to an
+ * OutputSink once the turn is over, so each turn is written in one go.
+ * The buffer is reset at the start of every turn and its storage is kept,
+ * so a session stops allocating once its longest turn has been seen.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class TurnBuffer
+{
+    private byte[] bytes;       // The encoded text
+    private int length;         // The number of bytes in use
+
+    /**
+     * Create an empty buffer.
+     */
+    public TurnBuffer()
+    {
+        bytes = new byte[1024];
+        length = 0;
+    }
+
+    /**
+     * Empty the buffer for the next turn.
+     */
+    public void reset()
+    {
+        length = 0;
+    }
+
+    /**
+     * @return The number of bytes in the buffer.
+     */
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * @return The storage of the buffer. Only the first length() bytes are valid.
+     */
+    public byte[] array()
+    {
+        return bytes;
+    }
+
+    /**
+     * Append text, encoded as UTF-8.
+     *
+     * @param text The text to append.
+     * @return This buffer.
+     */
+    public TurnBuffer append(String text)
+    {
+        int count = text.length();
+        ensureCapacity(length + count * 3);
+        for (int i = 0; i < count; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (java.lang.Character.isHighSurrogate(c) && i + 1 < count
+                     && java.lang.Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = java.lang.Character.toCodePoint(c, text.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Append a single character, encoded as UTF-8.
+     *
+     * @param c The character to append.
+     * @return This buffer.
+     */
+    public TurnBuffer append(char c)
+    {
+        if (c < 0x80) {
+            ensureCapacity(length + 1);
+            bytes[length++] = (byte) c;
+            return this;
+        }
+        return append(String.valueOf(c));
+    }
+
+    /**
+     * Append a number in decimal.
+     *
+     * @param number The number to append.
+     * @return This buffer.
+     */
+    public TurnBuffer append(int number)
+    {
+        return append(Integer.toString(number));
+    }
+
+    /**
+     * Append text that is already encoded as UTF-8.
+     *
+     * @param encoded The encoded text.
+     * @return This buffer.
+     */
+    public TurnBuffer append(byte[] encoded)
+    {
+        ensureCapacity(length + encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        return this;
+    }
+
+    /**
+     * Write the contents of the buffer to a stream.
+     *
+     * @param out The stream to write to.
+     */
+    public void writeTo(OutputStream out) throws IOException
+    {
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * @return The contents of the buffer as text.
+     */
+    public String toString()
+    {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Make room for at least the given number of bytes.
+     *
+     * @param capacity The number of bytes needed.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
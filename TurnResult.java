@@ -0,0 +1,51 @@
+/**
+ * The outcome of one turn of a game session: whether the game goes on,
+ * was won or was quit. The text the turn produced is not part of the
+ * result; it goes to the session's OutputSink.
+ *
+ * @author Jawhara Jannah
+ * @version 2.0
+ */
+public enum TurnResult
+{
+    CONTINUE(false, false), WON(true, true), QUIT(true, false);
+
+    private boolean gameOver;   // Whether the game is over after this turn
+    private boolean won;        // Whether the player has won the game
+
+    /**
+     * Initialise a turn outcome.
+     *
+     * @param gameOver Whether the game is over after this turn.
+     * @param won Whether the player has won the game.
+     */
+    TurnResult(boolean gameOver, boolean won)
+    {
+        this.gameOver = gameOver;
+        this.won = won;
+    }
+
+    /**
+     * @return true if the game is over after this turn.
+     */
+    public boolean isGameOver()
+    {
+        return gameOver;
+    }
+
+    /**
+     * @return true if the player has won the game.
+     */
+    public boolean isWon()
+    {
+        return won;
+    }
+
+    /**
+     * @return true if the game ended because the player quit.
+     */
+    public boolean isQuit()
+    {
+        return gameOver && !won;
+    }
+}
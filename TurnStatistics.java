@@ -0,0 +1,240 @@
+/**
+ * Where the turns of game sessions spend their time.
+ *
+ * Every part of a turn has its own LatencyHistogram: parsing the line,
+ * each command word from dispatch to the end of its handler, the win check
+ * and moving the wandering characters, as well as the whole turn. The
+ * number of times a command word was used is the count of its histogram.
+ *
+ * One TurnStatistics is meant to be shared by all the sessions of a
+ * process. Recording never locks and costs a few atomic additions, so the
+ * statistics can be kept on a busy server. They are shown by the 'stats'
+ * command, and GameServer also registers them as an MBean.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class TurnStatistics implements TurnStatisticsMBean
+{
+    private static final CommandWord[] WORDS = CommandWord.values();
+
+    private final LatencyHistogram[] commands;      // The time of each command word, by ordinal
+    private final LatencyHistogram parse;           // The time to parse a line
+    private final LatencyHistogram win;             // The time to check for a win
+    private final LatencyHistogram characters;      // The time to move the wandering characters
+    private final LatencyHistogram turns;           // The time of whole turns
+
+    /**
+     * Create statistics without any times.
+     */
+    public TurnStatistics()
+    {
+        commands = new LatencyHistogram[WORDS.length];
+        for (int w = 0; w < commands.length; w++) {
+            commands[w] = new LatencyHistogram();
+        }
+        parse = new LatencyHistogram();
+        win = new LatencyHistogram();
+        characters = new LatencyHistogram();
+        turns = new LatencyHistogram();
+    }
+
+    /**
+     * @param nanos The time it took to parse a line.
+     */
+    public void recordParse(long nanos)
+    {
+        parse.record(nanos);
+    }
+
+    /**
+     * @param commandWord The command word of a command.
+     * @param nanos The time it took to dispatch and execute the command.
+     */
+    public void recordCommand(CommandWord commandWord, long nanos)
+    {
+        commands[commandWord.ordinal()].record(nanos);
+    }
+
+    /**
+     * @param nanos The time it took to check for a win.
+     */
+    public void recordWinCheck(long nanos)
+    {
+        win.record(nanos);
+    }
+
+    /**
+     * @param nanos The time it took to move the wandering characters.
+     */
+    public void recordCharacters(long nanos)
+    {
+        characters.record(nanos);
+    }
+
+    /**
+     * @param nanos The time a turn took, from the command to the moved characters.
+     */
+    public void recordTurn(long nanos)
+    {
+        turns.record(nanos);
+    }
+
+    /**
+     * @param commandWord A command word.
+     * @return The times of the command word.
+     */
+    public LatencyHistogram.Snapshot getCommand(CommandWord commandWord)
+    {
+        return commands[commandWord.ordinal()].snapshot();
+    }
+
+    /**
+     * @return The times of whole turns.
+     */
+    public LatencyHistogram.Snapshot getTurns()
+    {
+        return turns.snapshot();
+    }
+
+    /**
+     * @return The number of turns played.
+     */
+    public long getTurnCount()
+    {
+        return turns.snapshot().getCount();
+    }
+
+    /**
+     * @return The mean time of a turn in microseconds.
+     */
+    public double getTurnMeanMicros()
+    {
+        return turns.snapshot().getMean() / 1000;
+    }
+
+    /**
+     * @return The time in microseconds that 99% of the turns did not exceed.
+     */
+    public double getTurn99thPercentileMicros()
+    {
+        return turns.snapshot().getValueAtPercentile(99) / 1000.0;
+    }
+
+    /**
+     * @return The longest turn in microseconds.
+     */
+    public double getTurnMaxMicros()
+    {
+        return turns.snapshot().getMax() / 1000.0;
+    }
+
+    /**
+     * @param timer The name of a command word or of a part of a turn.
+     * @return The number of times it was timed, or -1 if there is no such timer.
+     */
+    public long getCount(String timer)
+    {
+        LatencyHistogram histogram = find(timer);
+        return histogram == null ? -1 : histogram.snapshot().getCount();
+    }
+
+    /**
+     * @param timer The name of a command word or of a part of a turn.
+     * @param percentile A share of the times, from 0 to 100.
+     * @return The time in microseconds that the share did not exceed, or -1
+     * if there is no such timer.
+     */
+    public double getPercentileMicros(String timer, double percentile)
+    {
+        LatencyHistogram histogram = find(timer);
+        return histogram == null ? -1 : histogram.snapshot().getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Forget every time recorded so far. Times recorded meanwhile may be
+     * forgotten as well.
+     */
+    public void reset()
+    {
+        for (LatencyHistogram histogram : commands) {
+            histogram.reset();
+        }
+        parse.reset();
+        win.reset();
+        characters.reset();
+        turns.reset();
+    }
+
+    /**
+     * Return a table of the times of every part of a turn that has been
+     * timed, in microseconds, for example
+     *
+     *   timer          count      mean    median       90%       99%       max
+     *   go               812       1.9       1.6       2.9       7.4      31.2
+     *
+     * @return The table, one line per timer.
+     */
+    public String getReport()
+    {
+        StringBuilder report = new StringBuilder(String.format("%-12s %9s %9s %9s %9s %9s %9s%n",
+            "timer", "count", "mean", "median", "90%", "99%", "max"));
+        for (int w = 0; w < commands.length; w++) {
+            appendRow(report, name(WORDS[w]), commands[w]);
+        }
+        appendRow(report, "parse", parse);
+        appendRow(report, "win", win);
+        appendRow(report, "characters", characters);
+        appendRow(report, "turn", turns);
+        return report.toString();
+    }
+
+    /**
+     * Add the line of a timer to the report, unless it has not been used.
+     */
+    private static void appendRow(StringBuilder report, String timer, LatencyHistogram histogram)
+    {
+        LatencyHistogram.Snapshot times = histogram.snapshot();
+        if (times.getCount() == 0) {
+            return;
+        }
+        report.append(String.format("%-12s %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n", timer, times.getCount(),
+            times.getMean() / 1000, times.getValueAtPercentile(50) / 1000.0, times.getValueAtPercentile(90) / 1000.0,
+            times.getValueAtPercentile(99) / 1000.0, times.getMax() / 1000.0));
+    }
+
+    /**
+     * @return The histogram of a timer, or null if there is no timer of that name.
+     */
+    private LatencyHistogram find(String timer)
+    {
+        if (timer == null) {
+            return null;
+        }
+        for (int w = 0; w < commands.length; w++) {
+            if (name(WORDS[w]).equals(timer)) {
+                return commands[w];
+            }
+        }
+        switch (timer) {
+            case "parse":
+                return parse;
+            case "win":
+                return win;
+            case "characters":
+                return characters;
+            case "turn":
+                return turns;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return The name of the timer of a command word.
+     */
+    private static String name(CommandWord commandWord)
+    {
+        return commandWord == CommandWord.UNKNOWN ? "unknown" : commandWord.toString();
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * The management interface of TurnStatistics, for JMX clients such as
+ * jconsole. Times are in microseconds.
+ *
+ * A timer is named by a command word, such as "go" or "take", "unknown"
+ * for lines that are not commands, or one of the parts of a turn: "parse",
+ * "win", "characters" and "turn" for the whole turn.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public interface TurnStatisticsMBean
+{
+    /**
+     * @return The number of turns played.
+     */
+    long getTurnCount();
+
+    /**
+     * @return The mean time of a turn.
+     */
+    double getTurnMeanMicros();
+
+    /**
+     * @return The time that 99% of the turns did not exceed.
+     */
+    double getTurn99thPercentileMicros();
+
+    /**
+     * @return The longest turn.
+     */
+    double getTurnMaxMicros();
+
+    /**
+     * @return The table printed by the 'stats' command.
+     */
+    String getReport();
+
+    /**
+     * @param timer The name of a timer.
+     * @return The number of times it was timed, or -1 if there is no such timer.
+     */
+    long getCount(String timer);
+
+    /**
+     * @param timer The name of a timer.
+     * @param percentile A share of the times, from 0 to 100.
+     * @return The time that the share did not exceed, or -1 if there is no such timer.
+     */
+    double getPercentileMicros(String timer, double percentile);
+
+    /**
+     * Forget every time recorded so far.
+     */
+    void reset();
+}
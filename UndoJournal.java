@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * The most recent actions of a player, kept so that they can be undone.
+ *
+ * Each action is three small numbers: what was done, what it was done to
+ * and a detail needed to reverse it.
+ *
+ *   MOVE   the room that was left, and 0
+ *   TAKE   the item taken, and the room it was taken from
+ *   DROP   the item dropped, and the room it was dropped in
+ *   GIVE   the item given, and 1 if the gift changed the one who got it
+ *
+ * The journal is a ring of at most a fixed number of actions. Once it is
+ * full, every new action replaces the oldest, so a journal never takes more
+ * memory than its capacity allows however long the game goes on. Adding
+ * and taking off the latest action take constant time.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class UndoJournal
+{
+    public static final int MOVE = 0;       // The player went to another room
+    public static final int TAKE = 1;       // The player took an item from a room
+    public static final int DROP = 2;       // The player dropped an item in a room
+    public static final int GIVE = 3;       // The player gave an item away
+
+    private int capacity;           // The most actions the journal keeps
+    private byte[] actions;         // What was done in each entry of the ring
+    private int[] subjects;         // The room or item of each entry
+    private int[] details;          // The detail of each entry
+    private int top;                // The entry after the latest action
+    private int size;               // The number of actions kept
+
+    /**
+     * Create an empty journal. Its storage grows with the first actions up
+     * to the capacity and no further.
+     *
+     * @param capacity The most actions to keep, 1 or more.
+     */
+    public UndoJournal(int capacity)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        this.capacity = capacity;
+        int length = Math.min(capacity, 16);
+        actions = new byte[length];
+        subjects = new int[length];
+        details = new int[length];
+        top = 0;
+        size = 0;
+    }
+
+    /**
+     * @return A journal that starts with the actions of this journal and
+     * then changes independently of it.
+     */
+    public UndoJournal copy()
+    {
+        UndoJournal copy = new UndoJournal(capacity);
+        copy.actions = actions.clone();
+        copy.subjects = subjects.clone();
+        copy.details = details.clone();
+        copy.top = top;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return The most actions the journal keeps.
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return The number of actions that can be undone.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if there is nothing to undo.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Record an action, forgetting the oldest one if the journal is full.
+     *
+     * @param action MOVE, TAKE, DROP or GIVE.
+     * @param subject The room or item of the action.
+     * @param detail The detail of the action.
+     */
+    public void push(int action, int subject, int detail)
+    {
+        if (size == actions.length && size < capacity) {
+            grow();
+        }
+        actions[top] = (byte) action;
+        subjects[top] = subject;
+        details[top] = detail;
+        top = (top + 1) % actions.length;
+        if (size < actions.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Forget the latest action, once it has been undone.
+     */
+    public void pop()
+    {
+        if (size == 0) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        top = (top + actions.length - 1) % actions.length;
+        size--;
+    }
+
+    /**
+     * @param i The number of an action, from 0 for the oldest to size() - 1
+     * for the latest.
+     * @return What was done: MOVE, TAKE, DROP or GIVE.
+     */
+    public int getAction(int i)
+    {
+        return actions[entry(i)];
+    }
+
+    /**
+     * @param i The number of an action, from 0 for the oldest.
+     * @return The room or item of the action.
+     */
+    public int getSubject(int i)
+    {
+        return subjects[entry(i)];
+    }
+
+    /**
+     * @param i The number of an action, from 0 for the oldest.
+     * @return The detail of the action.
+     */
+    public int getDetail(int i)
+    {
+        return details[entry(i)];
+    }
+
+    /**
+     * Take out the latest action of a kind, keeping the later actions of
+     * other kinds. This is how 'back' returns to the previous room without
+     * undoing what was taken or dropped since.
+     *
+     * @param action The kind of action.
+     * @return The subject of the action taken out, or -1 if there is none.
+     */
+    public int removeLatest(int action)
+    {
+        for (int i = size - 1; i >= 0; i--) {
+            int at = entry(i);
+            if (actions[at] == action) {
+                int subject = subjects[at];
+                for (int j = i + 1; j < size; j++) {
+                    int from = entry(j);
+                    actions[at] = actions[from];
+                    subjects[at] = subjects[from];
+                    details[at] = details[from];
+                    at = from;
+                }
+                pop();
+                return subject;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The entry of the ring that holds an action.
+     */
+    private int entry(int i)
+    {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("action " + i + " of " + size);
+        }
+        return (top - size + i + actions.length) % actions.length;
+    }
+
+    /**
+     * Double the storage, up to the capacity, while the ring is full.
+     */
+    private void grow()
+    {
+        int length = Math.min(capacity, actions.length * 2);
+        int start = top % actions.length;   // The oldest entry of a full ring
+        actions = unwrap(actions, start, length);
+        subjects = unwrap(subjects, start, length);
+        details = unwrap(details, start, length);
+        top = size;
+    }
+
+    /**
+     * @return A longer copy of a full ring with its oldest entry first.
+     */
+    private static byte[] unwrap(byte[] ring, int start, int length)
+    {
+        byte[] copy = Arrays.copyOfRange(ring, start, start + length);
+        System.arraycopy(ring, 0, copy, ring.length - start, start);
+        return copy;
+    }
+
+    /**
+     * @return A longer copy of a full ring with its oldest entry first.
+     */
+    private static int[] unwrap(int[] ring, int start, int length)
+    {
+        int[] copy = Arrays.copyOfRange(ring, start, start + length);
+        System.arraycopy(ring, 0, copy, ring.length - start, start);
+        return copy;
+    }
+}
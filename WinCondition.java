@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The items a world's goal requires, compiled into a bitmask.
+ *
+ * Each distinct required item name gets one bit. A player keeps the bits
+ * of the required items they carry in a long[] set made by newSet(), so
+ * checking whether all required items are held, and listing the missing
+ * ones, takes one word operation per 64 required items.
+ *
+ * A world keeps the bit of each of its items, worked out when the world
+ * is loaded or compiled into an image, so the condition of a world finds
+ * the bit of an item by its number without looking its name up.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class WinCondition
+{
+    private String[] names;                     // The name of the required item of each bit
+    private HashMap<String, Integer> bits;      // The bit of each required item, by ItemKey
+    private long[] all;                         // Every bit set
+    private World world;                        // The world whose items know their bits, or null
+    private int[] requiredItems;                // The numbers of the world's required items, once found
+
+    /**
+     * Compile a list of required item names.
+     *
+     * @param requiredItems The names of the items needed to win, in any case.
+     */
+    public WinCondition(List<String> requiredItems)
+    {
+        bits = new HashMap<>();
+        List<String> distinct = new ArrayList<>();
+        for (String name : requiredItems) {
+            if (bits.putIfAbsent(ItemKey.of(name), distinct.size()) == null) {
+                distinct.add(name);
+            }
+        }
+        names = distinct.toArray(new String[0]);
+        all = new long[(names.length + 63) >>> 6];
+        for (int bit = 0; bit < names.length; bit++) {
+            all[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Compile the items a world requires.
+     *
+     * @param world The world.
+     */
+    public WinCondition(World world)
+    {
+        this(world.getRequiredItems());
+        this.world = world;
+    }
+
+    /**
+     * Work out the bit of every item of a world, for the world to keep.
+     *
+     * @param world The world.
+     * @return The bit of each item by number, or -1 if the goal does not require it.
+     */
+    static int[] buildItemBits(World world)
+    {
+        WinCondition goal = new WinCondition(world.getRequiredItems());
+        int[] bits = new int[world.getItemCount()];
+        for (int item = 0; item < bits.length; item++) {
+            bits[item] = goal.getBit(world.getItem(item).getName());
+        }
+        return bits;
+    }
+
+    /**
+     * Return the numbers of the items of the world that the goal requires.
+     * They are found from the bits the world keeps the first time they are
+     * asked for, without decoding any item.
+     *
+     * @return The numbers in increasing order, or none if the condition
+     * was not compiled for a world.
+     */
+    public synchronized int[] getRequiredItemNumbers()
+    {
+        if (requiredItems == null) {
+            int count = 0;
+            int[] found = new int[16];
+            int items = world == null ? 0 : world.getItemCount();
+            for (int item = 0; item < items; item++) {
+                if (world.getItemGoalBit(item) >= 0) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = item;
+                }
+            }
+            requiredItems = Arrays.copyOf(found, count);
+        }
+        return requiredItems;
+    }
+
+    /**
+     * @return A new, empty set of held required items.
+     */
+    public long[] newSet()
+    {
+        return new long[(names.length + 63) >>> 6];
+    }
+
+    /**
+     * @return The number of distinct required items.
+     */
+    public int size()
+    {
+        return names.length;
+    }
+
+    /**
+     * @param itemName The name of an item, in any case.
+     * @return The bit of the item, or -1 if the goal does not require it.
+     */
+    public int getBit(String itemName)
+    {
+        Integer bit = bits.get(ItemKey.of(itemName));
+        return bit == null ? -1 : bit;
+    }
+
+    /**
+     * @param item An item of the world the condition was compiled for, or
+     *             an item of no world.
+     * @return The bit of the item, or -1 if the goal does not require it.
+     */
+    public int getBit(Item item)
+    {
+        int id = item.getId();
+        if (world != null && id >= 0 && id < world.getItemCount()) {
+            return world.getItemGoalBit(id);
+        }
+        return getBit(item.getName());
+    }
+
+    /**
+     * @param held A set of held required items.
+     * @return true if every required item is in the set.
+     */
+    public boolean isMet(long[] held)
+    {
+        for (int w = 0; w < all.length; w++) {
+            if ((held[w] & all[w]) != all[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param held A set of held required items.
+     * @return The names of the required items that are not in the set, in the order of the goal.
+     */
+    public List<String> getMissing(long[] held)
+    {
+        List<String> missing = new ArrayList<>();
+        for (int w = 0; w < all.length; w++) {
+            long bitsLeft = all[w] & ~held[w];
+            while (bitsLeft != 0) {
+                missing.add(names[(w << 6) + Long.numberOfTrailingZeros(bitsLeft)]);
+                bitsLeft &= bitsLeft - 1;
+            }
+        }
+        return missing;
+    }
+}
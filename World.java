@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The definition of a game world: its rooms, exits, items, characters,
+ * starting room and win condition.
+ *
+ * A World is immutable and shared by every session played on it. Each
+ * GameEngine builds its own rooms and characters from the definition, so
+ * sessions never see each other's moves. Worlds are read from world files
+ * by WorldLoader into a HeapWorld, or mapped from a compiled world image
+ * as a MappedWorld.
+ *
+ * Rooms are numbered from 0. The exits of room r are numbered from
+ * getFirstExit(r) up to getFirstExit(r + 1), sorted by direction, and the
+ * items are numbered in the same way by the room they start in.
+ *
+ * @author Jawhara Jannah
+ * @version 2.0
+ */
+public abstract class World
+{
+    private static final String STOCK_WORLD = "jewel-hunt.world";   // The file of the stock world
+    private static final int SHARED_RENDER_ROOMS = 1 << 16;         // Largest world whose room texts are shared
+    private static World stock;                                     // The stock world, loaded on first use
+
+    private WinCondition winCondition;          // The required items compiled into a bitmask, made when first needed
+    private Routes routes;                      // The shortest routes between rooms, made when first needed
+    private volatile AtomicReferenceArray<byte[]> renders;  // The arrival text of each room as the world sets it up
+
+    /**
+     * Return the stock Jewel Hunt world. It is read from "jewel-hunt.world"
+     * on the class path, or in the working directory, the first time it is
+     * needed.
+     *
+     * @return The stock world.
+     */
+    public static synchronized World stock()
+    {
+        if (stock == null) {
+            try (Reader reader = openStockWorld()) {
+                stock = new WorldLoader().load(STOCK_WORLD, reader);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Cannot load the stock world", e);
+            }
+        }
+        return stock;
+    }
+
+    /**
+     * @return A reader for the stock world file.
+     */
+    private static Reader openStockWorld() throws IOException
+    {
+        InputStream in = World.class.getResourceAsStream(STOCK_WORLD);
+        if (in == null) {
+            in = Files.newInputStream(Paths.get(STOCK_WORLD));
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open a world file. Compiled world images are mapped into memory,
+     * anything else is read as a world file.
+     *
+     * @param file The world file or world image.
+     * @return The world.
+     * @throws WorldFormatException If a world file is not well formed.
+     */
+    public static World open(Path file) throws IOException
+    {
+        if (MappedWorld.isImage(file)) {
+            return MappedWorld.open(file);
+        }
+        return new WorldLoader().load(file);
+    }
+
+    /**
+     * @return The number of rooms.
+     */
+    public abstract int getRoomCount();
+
+    /**
+     * @param room The number of a room.
+     * @return The key of the room in the world file.
+     */
+    public abstract String getRoomKey(int room);
+
+    /**
+     * @param room The number of a room.
+     * @return The name of the room.
+     */
+    public abstract String getRoomName(int room);
+
+    /**
+     * @param room The number of a room.
+     * @return The description of the room.
+     */
+    public abstract String getRoomDescription(int room);
+
+    /**
+     * @param key The key of a room in the world file.
+     * @return The number of the room, or -1 if there is no such room.
+     */
+    public abstract int findRoom(String key);
+
+    /**
+     * @return The number of exits.
+     */
+    public abstract int getExitCount();
+
+    /**
+     * The exits of a room are numbered getFirstExit(room) up to, but not
+     * including, getFirstExit(room + 1), in the order of Direction.
+     *
+     * @param room The number of a room, or the number of rooms.
+     * @return The number of the room's first exit.
+     */
+    public abstract int getFirstExit(int room);
+
+    /**
+     * @param exit The number of an exit.
+     * @return The direction of the exit.
+     */
+    public abstract Direction getExitDirection(int exit);
+
+    /**
+     * @param exit The number of an exit.
+     * @return The room the exit leads to.
+     */
+    public abstract int getExitTarget(int exit);
+
+    /**
+     * Return the room that is reached by going from a room in a direction.
+     *
+     * @param room The number of a room.
+     * @param direction The direction to go in.
+     * @return The number of the room reached, or -1 if there is no exit that way.
+     */
+    public int getExit(int room, Direction direction)
+    {
+        for (int e = getFirstExit(room); e < getFirstExit(room + 1); e++) {
+            if (getExitDirection(e) == direction) {
+                return getExitTarget(e);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of items.
+     */
+    public abstract int getItemCount();
+
+    /**
+     * The items that start in a room are numbered getFirstItem(room) up
+     * to, but not including, getFirstItem(room + 1).
+     *
+     * @param room The number of a room, or the number of rooms.
+     * @return The number of the first item that starts in the room.
+     */
+    public abstract int getFirstItem(int room);
+
+    /**
+     * @param item The number of an item.
+     * @return The item. Items are immutable and may be shared by every session.
+     */
+    public abstract Item getItem(int item);
+
+    /**
+     * @param item The number of an item.
+     * @return The room the item starts in.
+     */
+    public abstract int getItemRoom(int item);
+
+    /**
+     * @param item The number of an item.
+     * @return The bit of the item in the world's WinCondition, or -1 if the goal does not require it.
+     */
+    public abstract int getItemGoalBit(int item);
+
+    /**
+     * Find the first item of a name that the world puts in a room, in
+     * constant time. Names are matched by their ItemKey, ignoring case.
+     *
+     * @param room The number of a room.
+     * @param name The name of the item.
+     * @return The number of the item, or -1 if the room starts with no such item.
+     */
+    public int findItem(int room, CharSequence name)
+    {
+        int size = getItemTableSize();
+        int first = getFirstItem(room);
+        int end = getFirstItem(room + 1);
+        if (first == end) {
+            return -1;
+        }
+        for (int slot = ItemKey.slot(room, name, size); ; slot = (slot + 1) & (size - 1)) {
+            int item = getItemTableEntry(slot) - 1;
+            if (item < 0) {
+                return -1;
+            }
+            if (item >= first && item < end && ItemKey.matches(getItem(item).getName(), name)) {
+                return item;
+            }
+        }
+    }
+
+    /**
+     * @param item The number of an item.
+     * @return The next item of the same name that the world puts in the same room, or -1.
+     */
+    public abstract int getNextItemNamed(int item);
+
+    /**
+     * @return The size of the table of items by room and name, a power of two.
+     */
+    abstract int getItemTableSize();
+
+    /**
+     * @param slot A slot of the table of items by room and name.
+     * @return The number + 1 of the item in the slot, or 0 if the slot is free.
+     */
+    abstract int getItemTableEntry(int slot);
+
+    /**
+     * @return The number of characters.
+     */
+    public abstract int getCharacterCount();
+
+    /**
+     * Create a character for a new session. Characters change during a
+     * game, so every session gets its own.
+     *
+     * @param character The number of a character.
+     * @return A new character with the character's name, description and dialogue.
+     */
+    public abstract Character createCharacter(int character);
+
+    /**
+     * @param character The number of a character.
+     * @return The room of the character, or -1 if the character wanders.
+     */
+    public abstract int getCharacterRoom(int character);
+
+    /**
+     * @return The room the player starts in.
+     */
+    public abstract int getStartRoom();
+
+    /**
+     * @return The room the required items must be brought to.
+     */
+    public abstract int getGoalRoom();
+
+    /**
+     * @return The names of the items needed to win, in the order of the world file.
+     */
+    public abstract List<String> getRequiredItems();
+
+    /**
+     * @return The items needed to win, compiled for quick checks.
+     */
+    public synchronized WinCondition getWinCondition()
+    {
+        if (winCondition == null) {
+            winCondition = new WinCondition(this);
+        }
+        return winCondition;
+    }
+
+    /**
+     * @return The shortest routes between the rooms, shared by every session.
+     */
+    public synchronized Routes getRoutes()
+    {
+        if (routes == null) {
+            routes = new Routes(this);
+        }
+        return routes;
+    }
+
+    /**
+     * Return the arrival texts of the rooms as the world sets them up, for
+     * every session to share while the items of a room have not moved.
+     * Room fills them in when first needed. A world of more than
+     * SHARED_RENDER_ROOMS rooms shares none, so that the texts of rooms
+     * visited once do not pile up.
+     *
+     * @return The texts, or null if they are not shared.
+     */
+    AtomicReferenceArray<byte[]> getRenders()
+    {
+        AtomicReferenceArray<byte[]> shared = renders;
+        if (shared == null && getRoomCount() <= SHARED_RENDER_ROOMS) {
+            synchronized (this) {
+                if (renders == null) {
+                    renders = new AtomicReferenceArray<>(getRoomCount());
+                }
+                shared = renders;
+            }
+        }
+        return shared;
+    }
+}
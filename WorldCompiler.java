@@ -0,0 +1,46 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compiles a world file into a world image, which MappedWorld maps into
+ * memory instead of reading it. Large worlds should be compiled once so
+ * that the game and the server start at once however big the world is.
+ * The compiler also checks that the world can be won and reports its
+ * par: the fewest moves in which a new game can be won.
+ *
+ *   java WorldCompiler world-file image-file
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class WorldCompiler
+{
+    /**
+     * Compile a world file from the command line.
+     *
+     * @param args The world file and the image file to write.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2) {
+            System.err.println("Usage: java WorldCompiler world-file image-file");
+            System.exit(2);
+        }
+        Path source = Paths.get(args[0]);
+        Path image = Paths.get(args[1]);
+        long start = System.nanoTime();
+        World world = World.open(source);
+        MappedWorld.write(world, image);
+        System.out.printf("Compiled %d rooms, %d exits and %d items into %s in %.0f ms%n", world.getRoomCount(),
+            world.getExitCount(), world.getItemCount(), image, (System.nanoTime() - start) / 1e6);
+
+        TourSolver.Tour tour = new GameEngine(world).getTour();
+        if (tour.isSolvable()) {
+            System.out.printf("Par: %s%d moves%n", tour.isOptimal() ? "" : "at most ", tour.getMoves());
+        }
+        else {
+            System.out.println("Warning: the world cannot be won: " + tour.getProblem());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+
+/**
+ * Thrown when a world file cannot be loaded because it is not well formed.
+ * The message names the file and the line the problem was found on.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class WorldFormatException extends IOException
+{
+    private static final long serialVersionUID = 1L;
+
+    private String source;      // The name of the world file
+    private int line;           // The line the problem was found on
+
+    /**
+     * Create an exception for a problem on a line of a world file.
+     *
+     * @param source The name of the world file.
+     * @param line The line the problem was found on.
+     * @param message What is wrong.
+     */
+    public WorldFormatException(String source, int line, String message)
+    {
+        super(source + ":" + line + ": " + message);
+        this.source = source;
+        this.line = line;
+    }
+
+    /**
+     * @return The name of the world file.
+     */
+    public String getSource()
+    {
+        return source;
+    }
+
+    /**
+     * @return The line the problem was found on.
+     */
+    public int getLine()
+    {
+        return line;
+    }
+}
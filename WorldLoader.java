@@ -0,0 +1,515 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a World from a world file into a HeapWorld.
+ *
+ * A world file is read line by line in a single pass. Each line declares a
+ * room, an exit, an item, a character, the starting room or the goal:
+ *
+ *   room <key> | <name> | <description>
+ *   exit <room> <direction> <room>
+ *   item <room> | <name> | <description> | <weight> | pickable|fixed
+ *   character <key> <room>|* | <name> | <description> | <dialogue>
+ *   start <room>
+ *   goal <room> | <item> <item> ...
+ *
+ * Blank lines and lines starting with '#' are ignored. Fields after the
+ * first '|' are trimmed and "\n" in a field stands for a line break.
+ * Directions are the words of Direction, in any case, and a room may have
+ * only one exit in each direction.
+ * Declarations may refer to rooms that are declared further down the file;
+ * those references are checked once the whole file has been read. Every
+ * problem is reported as a WorldFormatException naming its line.
+ *
+ * @author Jawhara Jannah
+ * @version 1.0
+ */
+public class WorldLoader
+{
+    // The kinds of declaration that can refer to a room before it is declared
+    private static final int EXIT_FROM = 0;
+    private static final int EXIT_TO = 1;
+    private static final int ITEM_ROOM = 2;
+    private static final int CHARACTER_ROOM = 3;
+
+    private String source;                          // The name of the file being read
+    private List<String> roomKeys;                  // Keys of the rooms read so far
+    private List<String> roomNames;                 // Names of the rooms read so far
+    private List<String> roomDescriptions;          // Descriptions of the rooms read so far
+    private HashMap<String, Integer> roomIndex;     // Room numbers by key
+    private int[] roomLines;                        // The line each room was declared on
+
+    private int exitCount;                          // The number of exits read so far
+    private int[] exitFrom;                         // The room each exit leads from
+    private byte[] exitDirections;                  // The direction of each exit, by ordinal
+    private int[] exitTo;                           // The room each exit leads to
+    private int[] exitLines;                        // The line each exit was declared on
+
+    private List<Item> items;                       // The items read so far
+    private int[] itemRooms;                        // The room each item starts in
+
+    private List<Character> characters;             // The characters read so far
+    private int[] characterRooms;                   // The room of each character, -1 for wanderers
+    private Set<String> characterKeys;              // Keys of the characters read so far
+
+    private List<String> pendingKeys;               // Room keys used before their room was declared
+    private int[] pendingSlots;                     // Where each pending room number goes, see reference()
+    private int[] pendingLines;                     // The line of each pending reference
+
+    private String startKey;                        // The key of the starting room
+    private int startLine;                          // The line the start was declared on
+    private String goalKey;                         // The key of the goal room
+    private List<String> requiredItems;             // The items needed to win
+    private int goalLine;                           // The line the goal was declared on
+
+    /**
+     * Read a world file.
+     *
+     * @param file The world file.
+     * @return The world.
+     * @throws WorldFormatException If the file is not well formed.
+     */
+    public World load(Path file) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(file.toString(), reader);
+        }
+    }
+
+    /**
+     * Read a world from a stream of world-file lines.
+     *
+     * @param source The name of the world, used in error messages.
+     * @param in The world-file text.
+     * @return The world.
+     * @throws WorldFormatException If the text is not well formed.
+     */
+    public World load(String source, Reader in) throws IOException
+    {
+        reset(source);
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            parseLine(line, lineNumber);
+        }
+        return build(lineNumber);
+    }
+
+    /**
+     * Forget everything read before and start on a new file.
+     *
+     * @param source The name of the file.
+     */
+    private void reset(String source)
+    {
+        this.source = source;
+        roomKeys = new ArrayList<>();
+        roomNames = new ArrayList<>();
+        roomDescriptions = new ArrayList<>();
+        roomIndex = new HashMap<>();
+        roomLines = new int[64];
+        exitCount = 0;
+        exitFrom = new int[64];
+        exitDirections = new byte[64];
+        exitTo = new int[64];
+        exitLines = new int[64];
+        items = new ArrayList<>();
+        itemRooms = new int[64];
+        characters = new ArrayList<>();
+        characterRooms = new int[8];
+        characterKeys = new HashSet<>();
+        pendingKeys = new ArrayList<>();
+        pendingSlots = new int[64];
+        pendingLines = new int[64];
+        startKey = null;
+        goalKey = null;
+        requiredItems = new ArrayList<>();
+    }
+
+    /**
+     * Read one line of the world file.
+     *
+     * @param line The text of the line.
+     * @param lineNumber The number of the line.
+     */
+    private void parseLine(String line, int lineNumber) throws WorldFormatException
+    {
+        int bar = line.indexOf('|');
+        String[] head = words(bar < 0 ? line : line.substring(0, bar));
+        if (head.length == 0 || head[0].startsWith("#")) {
+            return;
+        }
+        String[] fields = bar < 0 ? new String[0] : fields(line.substring(bar + 1));
+
+        switch (head[0]) {
+            case "room":
+                expect(head, 2, fields, 2, "room <key> | <name> | <description>", lineNumber);
+                addRoom(head[1], fields[0], fields[1], lineNumber);
+                break;
+            case "exit":
+                expect(head, 4, fields, 0, "exit <room> <direction> <room>", lineNumber);
+                addExit(head[1], head[2], head[3], lineNumber);
+                break;
+            case "item":
+                expect(head, 2, fields, 4, "item <room> | <name> | <description> | <weight> | pickable|fixed", lineNumber);
+                addItem(head[1], fields, lineNumber);
+                break;
+            case "character":
+                expect(head, 3, fields, 3, "character <key> <room>|* | <name> | <description> | <dialogue>", lineNumber);
+                addCharacter(head[1], head[2], fields, lineNumber);
+                break;
+            case "start":
+                expect(head, 2, fields, 0, "start <room>", lineNumber);
+                if (startKey != null) {
+                    throw error(lineNumber, "the start was already declared on line " + startLine);
+                }
+                startKey = head[1];
+                startLine = lineNumber;
+                break;
+            case "goal":
+                expect(head, 2, fields, 1, "goal <room> | <item> <item> ...", lineNumber);
+                if (goalKey != null) {
+                    throw error(lineNumber, "the goal was already declared on line " + goalLine);
+                }
+                goalKey = head[1];
+                requiredItems.addAll(Arrays.asList(words(fields[0])));
+                goalLine = lineNumber;
+                break;
+            default:
+                throw error(lineNumber, "unknown declaration '" + head[0] + "'");
+        }
+    }
+
+    /**
+     * Declare a room.
+     */
+    private void addRoom(String key, String name, String description, int lineNumber) throws WorldFormatException
+    {
+        Integer existing = roomIndex.putIfAbsent(key, roomKeys.size());
+        if (existing != null) {
+            throw error(lineNumber, "room '" + key + "' was already declared on line " + roomLines[existing]);
+        }
+        roomLines = ensureCapacity(roomLines, roomKeys.size());
+        roomLines[roomKeys.size()] = lineNumber;
+        roomKeys.add(key);
+        roomNames.add(name);
+        roomDescriptions.add(description);
+    }
+
+    /**
+     * Declare an exit.
+     */
+    private void addExit(String from, String directionWord, String to, int lineNumber) throws WorldFormatException
+    {
+        Direction direction = Direction.fromString(directionWord);
+        if (direction == null) {
+            throw error(lineNumber, "unknown direction '" + directionWord + "'");
+        }
+        if (exitCount == exitTo.length) {
+            int capacity = exitCount * 2;
+            exitFrom = Arrays.copyOf(exitFrom, capacity);
+            exitDirections = Arrays.copyOf(exitDirections, capacity);
+            exitTo = Arrays.copyOf(exitTo, capacity);
+            exitLines = Arrays.copyOf(exitLines, capacity);
+        }
+        exitDirections[exitCount] = (byte) direction.ordinal();
+        exitLines[exitCount] = lineNumber;
+        exitFrom[exitCount] = reference(from, exitCount, EXIT_FROM, lineNumber);
+        exitTo[exitCount] = reference(to, exitCount, EXIT_TO, lineNumber);
+        exitCount++;
+    }
+
+    /**
+     * Declare an item.
+     */
+    private void addItem(String roomKey, String[] fields, int lineNumber) throws WorldFormatException
+    {
+        int weight;
+        try {
+            weight = Integer.parseInt(fields[2]);
+        }
+        catch (NumberFormatException e) {
+            throw error(lineNumber, "the weight '" + fields[2] + "' is not a number");
+        }
+        boolean pickable;
+        if (fields[3].equals("pickable")) {
+            pickable = true;
+        }
+        else if (fields[3].equals("fixed")) {
+            pickable = false;
+        }
+        else {
+            throw error(lineNumber, "expected 'pickable' or 'fixed' but found '" + fields[3] + "'");
+        }
+        itemRooms = ensureCapacity(itemRooms, items.size());
+        itemRooms[items.size()] = reference(roomKey, items.size(), ITEM_ROOM, lineNumber);
+        items.add(new Item(fields[0], fields[1], weight, pickable));
+    }
+
+    /**
+     * Declare a character.
+     */
+    private void addCharacter(String key, String roomKey, String[] fields, int lineNumber) throws WorldFormatException
+    {
+        if (!characterKeys.add(key)) {
+            throw error(lineNumber, "character '" + key + "' was already declared");
+        }
+        characterRooms = ensureCapacity(characterRooms, characters.size());
+        characterRooms[characters.size()] = roomKey.equals("*") ? -1
+            : reference(roomKey, characters.size(), CHARACTER_ROOM, lineNumber);
+        characters.add(new Character(fields[0], fields[1], fields[2]));
+    }
+
+    /**
+     * Look up the room a declaration refers to. If the room has not been
+     * declared yet, the reference is remembered and filled in by build().
+     *
+     * @param key The key of the room.
+     * @param index The number of the exit, item or character that refers to the room.
+     * @param kind What refers to the room: EXIT_FROM, EXIT_TO, ITEM_ROOM or CHARACTER_ROOM.
+     * @param lineNumber The line of the reference.
+     * @return The number of the room, or -1 if it is not known yet.
+     */
+    private int reference(String key, int index, int kind, int lineNumber)
+    {
+        Integer room = roomIndex.get(key);
+        if (room != null) {
+            return room;
+        }
+        int pending = pendingKeys.size();
+        pendingSlots = ensureCapacity(pendingSlots, pending);
+        pendingLines = ensureCapacity(pendingLines, pending);
+        pendingSlots[pending] = index * 4 + kind;
+        pendingLines[pending] = lineNumber;
+        pendingKeys.add(key);
+        return -1;
+    }
+
+    /**
+     * Check the references between declarations and create the world.
+     *
+     * @param lastLine The number of the last line of the file.
+     * @return The world.
+     */
+    private HeapWorld build(int lastLine) throws WorldFormatException
+    {
+        if (roomKeys.isEmpty()) {
+            throw error(lastLine, "the world has no rooms");
+        }
+        if (startKey == null) {
+            throw error(lastLine, "the world has no 'start' declaration");
+        }
+        if (goalKey == null) {
+            throw error(lastLine, "the world has no 'goal' declaration");
+        }
+
+        // Fill in the references to rooms that were declared late
+        for (int p = 0; p < pendingKeys.size(); p++) {
+            int room = resolve(pendingKeys.get(p), pendingLines[p]);
+            int index = pendingSlots[p] / 4;
+            switch (pendingSlots[p] % 4) {
+                case EXIT_FROM: exitFrom[index] = room; break;
+                case EXIT_TO: exitTo[index] = room; break;
+                case ITEM_ROOM: itemRooms[index] = room; break;
+                default: characterRooms[index] = room; break;
+            }
+        }
+
+        int[] exitStart = new int[roomKeys.size() + 1];
+        int[] order = sortExits(exitStart);
+        byte[] directions = new byte[exitCount];
+        int[] targets = new int[exitCount];
+        for (int e = 0; e < exitCount; e++) {
+            directions[e] = exitDirections[order[e]];
+            targets[e] = exitTo[order[e]];
+        }
+
+        // Number the items by the room they start in, keeping their order within a room
+        int[] itemStart = new int[roomKeys.size() + 1];
+        for (int i = 0; i < items.size(); i++) {
+            itemStart[itemRooms[i] + 1]++;
+        }
+        for (int r = 0; r < roomKeys.size(); r++) {
+            itemStart[r + 1] += itemStart[r];
+        }
+        int[] next = Arrays.copyOf(itemStart, roomKeys.size());
+        Item[] sortedItems = new Item[items.size()];
+        int[] sortedItemRooms = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            int slot = next[itemRooms[i]]++;
+            Item item = items.get(i);
+            sortedItems[slot] = new Item(slot, item.getName(), item.getDescription(), item.getWeight(), item.isPickable());
+            sortedItemRooms[slot] = itemRooms[i];
+        }
+
+        Set<String> itemNames = new HashSet<>();
+        for (Item item : items) {
+            itemNames.add(item.getName());
+        }
+
+        int startRoom = resolve(startKey, startLine);
+        int goalRoom = resolve(goalKey, goalLine);
+        for (String required : requiredItems) {
+            if (!itemNames.contains(required)) {
+                throw error(goalLine, "the goal needs item '" + required + "' but no such item is declared");
+            }
+        }
+
+        return new HeapWorld(roomKeys.toArray(new String[0]), roomNames.toArray(new String[0]),
+            roomDescriptions.toArray(new String[0]), roomIndex,
+            exitStart, directions, targets, sortedItems, itemStart, sortedItemRooms,
+            characters.toArray(new Character[0]), Arrays.copyOf(characterRooms, characters.size()),
+            startRoom, goalRoom, requiredItems);
+    }
+
+    /**
+     * Order the exits by the room they lead from and, within a room, by
+     * direction, and check that no room has two exits the same way.
+     *
+     * @param exitStart Filled with the number of each room's first exit in the new order.
+     * @return The exits in the new order.
+     */
+    private int[] sortExits(int[] exitStart) throws WorldFormatException
+    {
+        for (int e = 0; e < exitCount; e++) {
+            exitStart[exitFrom[e] + 1]++;
+        }
+        for (int r = 0; r < exitStart.length - 1; r++) {
+            exitStart[r + 1] += exitStart[r];
+        }
+        int[] next = Arrays.copyOf(exitStart, exitStart.length - 1);
+        int[] order = new int[exitCount];
+        for (int e = 0; e < exitCount; e++) {
+            order[next[exitFrom[e]]++] = e;
+        }
+
+        // A room has only a handful of exits, so sort each room's by insertion
+        for (int r = 0; r < exitStart.length - 1; r++) {
+            for (int i = exitStart[r] + 1; i < exitStart[r + 1]; i++) {
+                int exit = order[i];
+                int j = i;
+                while (j > exitStart[r] && exitDirections[order[j - 1]] > exitDirections[exit]) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = exit;
+                if (j > exitStart[r] && exitDirections[order[j - 1]] == exitDirections[exit]) {
+                    int first = Math.min(exitLines[order[j - 1]], exitLines[exit]);
+                    int second = Math.max(exitLines[order[j - 1]], exitLines[exit]);
+                    throw error(second, "room '" + roomKeys.get(r) + "' already has an exit "
+                        + Direction.of(exitDirections[exit]) + " on line " + first);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Look up a room by key.
+     *
+     * @param key The key of the room.
+     * @param lineNumber The line that refers to the room.
+     * @return The number of the room.
+     */
+    private int resolve(String key, int lineNumber) throws WorldFormatException
+    {
+        Integer room = roomIndex.get(key);
+        if (room == null) {
+            throw error(lineNumber, "unknown room '" + key + "'");
+        }
+        return room;
+    }
+
+    /**
+     * Check that a declaration has the expected number of words and fields.
+     */
+    private void expect(String[] head, int words, String[] fields, int fieldCount, String form, int lineNumber)
+        throws WorldFormatException
+    {
+        if (head.length != words || fields.length != fieldCount) {
+            throw error(lineNumber, "expected " + form);
+        }
+    }
+
+    /**
+     * @return An exception for a problem on a line.
+     */
+    private WorldFormatException error(int lineNumber, String message)
+    {
+        return new WorldFormatException(source, lineNumber, message);
+    }
+
+    /**
+     * Split text into whitespace-separated words.
+     *
+     * @param text The text.
+     * @return The words.
+     */
+    private static String[] words(String text)
+    {
+        List<String> words = new ArrayList<>(4);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && java.lang.Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !java.lang.Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(text.substring(start, i));
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Split text into '|'-separated, trimmed fields and turn "\n" into line breaks.
+     *
+     * @param text The text.
+     * @return The fields.
+     */
+    private static String[] fields(String text)
+    {
+        List<String> fields = new ArrayList<>(4);
+        int start = 0;
+        int bar;
+        while ((bar = text.indexOf('|', start)) >= 0) {
+            fields.add(unescape(text.substring(start, bar).trim()));
+            start = bar + 1;
+        }
+        fields.add(unescape(text.substring(start).trim()));
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * @return The field with every "\n" replaced by a line break.
+     */
+    private static String unescape(String field)
+    {
+        return field.indexOf('\\') < 0 ? field : field.replace("\\n", "\n");
+    }
+
+    /**
+     * @return The array, grown if needed so that index is valid.
+     */
+    private static int[] ensureCapacity(int[] array, int index)
+    {
+        return index < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+}